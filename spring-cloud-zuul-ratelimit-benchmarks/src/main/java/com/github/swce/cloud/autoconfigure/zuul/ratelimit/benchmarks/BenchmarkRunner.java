@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.benchmarks;
+
+import java.io.File;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count with the GC profiler, writing a JSON result file per run. <p> Arguments
+ * are passed to JMH, e.g. {@code RateLimiterBenchmark -p repository=REDIS} to select benchmarks and parameters.
+ */
+public final class BenchmarkRunner {
+
+    private static final int[] THREADS = {1, 8, 32};
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String... args) throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        final File results = new File(System.getProperty("benchmark.results", "build/reports/jmh"));
+        results.mkdirs();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(results, "results-" + threads + "-threads.json").getPath())
+                .build();
+            new Runner(options).run();
+        }
+    }
+}
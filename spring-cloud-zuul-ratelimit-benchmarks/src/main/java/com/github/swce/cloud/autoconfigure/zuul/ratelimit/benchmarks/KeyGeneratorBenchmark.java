@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.benchmarks;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Cost of building the rate limit key of a request with {@link DefaultRateLimitKeyGenerator}, with and without
+ * matchers. The generated key should be the only allocation reported by the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyGeneratorBenchmark {
+
+    private RateLimitKeyGenerator keyGenerator;
+    private MockHttpServletRequest request;
+    private Route route;
+    private Policy policy;
+    private Policy matcherPolicy;
+
+    @Setup
+    public void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setKeyPrefix("benchmark");
+        keyGenerator = new DefaultRateLimitKeyGenerator(properties, new DefaultRateLimitUtils(properties));
+
+        request = new MockHttpServletRequest("GET", "/servicea/api/resource");
+        request.setRemoteAddr("10.0.0.1");
+        request.setRemoteUser("user");
+        route = new Route("servicea", "/api/resource", "servicea", "/servicea", null, Collections.emptySet());
+
+        policy = new Policy();
+        policy.setLimit(100L);
+        policy.getType().add(new MatchType(RateLimitType.URL, null));
+        policy.getType().add(new MatchType(RateLimitType.ORIGIN, null));
+        policy.getType().add(new MatchType(RateLimitType.USER, null));
+
+        matcherPolicy = new Policy();
+        matcherPolicy.setLimit(100L);
+        matcherPolicy.getType().add(new MatchType(RateLimitType.URL, "/api"));
+        matcherPolicy.getType().add(new MatchType(RateLimitType.ORIGIN, "10.0.0.1"));
+        matcherPolicy.getType().add(new MatchType(RateLimitType.HTTPMETHOD, "GET"));
+    }
+
+    @Benchmark
+    public String key() {
+        return keyGenerator.key(request, route, policy);
+    }
+
+    @Benchmark
+    public String keyWithMatchers() {
+        return keyGenerator.key(request, route, matcherPolicy);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.benchmarks;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.InMemoryRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.JdbcRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.LeasingRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.LettuceRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisScriptRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jHazelcastRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jIgniteRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jInfinispanRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jJCacheRateLimiter;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import io.github.bucket4j.grid.GridBucketState;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.infinispan.AdvancedCache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.functional.impl.FunctionalMapImpl;
+import org.infinispan.functional.impl.ReadWriteMapImpl;
+import org.infinispan.manager.DefaultCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.embedded.RedisServer;
+
+/**
+ * Cost of {@link RateLimiter#consume(Policy, String, Long)} for each repository, backed by an embedded Redis server,
+ * an in-memory H2 database and in-process Hazelcast, Ignite and Infinispan instances. <p> {@link #consumeOwnKey()}
+ * gives every thread its own key, while {@link #consumeSharedKey()} makes all the threads contend on the same key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RateLimiterBenchmark {
+
+    private static final String CACHE = "rateLimit";
+    private static final String JDBC_SCHEMA = "META-INF/scripts/ratelimit-jdbc-schema.sql";
+
+    @Param({"IN_MEMORY", "REDIS", "REDIS_SCRIPT", "REDIS_LEASING", "LETTUCE", "JDBC", "BUCKET4J_JCACHE",
+        "BUCKET4J_HAZELCAST", "BUCKET4J_IGNITE", "BUCKET4J_INFINISPAN"})
+    public String repository;
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private final Policy policy = new Policy();
+    private RateLimiter rateLimiter;
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private LettuceConnectionFactory lettuceConnectionFactory;
+    private EmbeddedDatabase database;
+    private HazelcastInstance hazelcastInstance;
+    private Ignite ignite;
+    private DefaultCacheManager cacheManager;
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+
+        private String key;
+
+        @Setup
+        public void setUp(RateLimiterBenchmark benchmark) {
+            key = "benchmark:key-" + benchmark.threads.incrementAndGet();
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        policy.setLimit(1_000_000_000L);
+        policy.setRefreshInterval(60L);
+        final RateLimiterErrorHandler errorHandler = new DefaultRateLimiterErrorHandler();
+        switch (repository) {
+            case "IN_MEMORY":
+                rateLimiter = new InMemoryRateLimiter(100_000, 10);
+                break;
+            case "REDIS":
+                rateLimiter = new RedisRateLimiter(errorHandler, redisTemplate());
+                break;
+            case "REDIS_SCRIPT":
+                RedisScriptRateLimiter redisScriptRateLimiter = new RedisScriptRateLimiter(errorHandler,
+                    redisTemplate());
+                redisScriptRateLimiter.afterPropertiesSet();
+                rateLimiter = redisScriptRateLimiter;
+                break;
+            case "REDIS_LEASING":
+                rateLimiter = new LeasingRateLimiter(new RedisRateLimiter(errorHandler, redisTemplate()), 0.05, 1000,
+                    10_000);
+                break;
+            case "LETTUCE":
+                lettuceConnectionFactory = new LettuceConnectionFactory();
+                lettuceConnectionFactory.setPort(startRedis());
+                lettuceConnectionFactory.afterPropertiesSet();
+                LettuceRateLimiter lettuceRateLimiter = new LettuceRateLimiter(errorHandler, lettuceConnectionFactory);
+                lettuceRateLimiter.afterPropertiesSet();
+                rateLimiter = lettuceRateLimiter;
+                break;
+            case "JDBC":
+                database = new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .addScript(JDBC_SCHEMA)
+                    .build();
+                rateLimiter = new JdbcRateLimiter(errorHandler, new JdbcTemplate(database), "rate_limit_counter", 100L);
+                break;
+            case "BUCKET4J_JCACHE":
+                rateLimiter = new Bucket4jJCacheRateLimiter(ignite().<String, GridBucketState>createCache(CACHE));
+                break;
+            case "BUCKET4J_HAZELCAST":
+                hazelcastInstance = Hazelcast.newHazelcastInstance();
+                rateLimiter = new Bucket4jHazelcastRateLimiter(hazelcastInstance.getMap(CACHE));
+                break;
+            case "BUCKET4J_IGNITE":
+                rateLimiter = new Bucket4jIgniteRateLimiter(ignite().<String, GridBucketState>createCache(CACHE));
+                break;
+            case "BUCKET4J_INFINISPAN":
+                cacheManager = new DefaultCacheManager();
+                cacheManager.defineConfiguration(CACHE, new ConfigurationBuilder().build());
+                AdvancedCache<String, GridBucketState> cache = cacheManager.<String, GridBucketState>getCache(CACHE)
+                    .getAdvancedCache();
+                rateLimiter = new Bucket4jInfinispanRateLimiter(
+                    ReadWriteMapImpl.create(FunctionalMapImpl.create(cache)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown repository " + repository);
+        }
+    }
+
+    private int startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        return port;
+    }
+
+    private StringRedisTemplate redisTemplate() throws IOException {
+        int port = startRedis();
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(64);
+        poolConfig.setMaxIdle(64);
+        connectionFactory = new JedisConnectionFactory(poolConfig);
+        connectionFactory.setPort(port);
+        connectionFactory.afterPropertiesSet();
+        return new StringRedisTemplate(connectionFactory);
+    }
+
+    private Ignite ignite() {
+        ignite = Ignition.start();
+        return ignite;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (rateLimiter instanceof InMemoryRateLimiter) {
+            ((InMemoryRateLimiter) rateLimiter).destroy();
+        }
+        if (rateLimiter instanceof LettuceRateLimiter) {
+            ((LettuceRateLimiter) rateLimiter).destroy();
+        }
+        if (rateLimiter instanceof JdbcRateLimiter) {
+            ((JdbcRateLimiter) rateLimiter).destroy();
+        }
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (lettuceConnectionFactory != null) {
+            lettuceConnectionFactory.destroy();
+        }
+        if (database != null) {
+            database.shutdown();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+        if (hazelcastInstance != null) {
+            hazelcastInstance.shutdown();
+        }
+        if (ignite != null) {
+            ignite.close();
+        }
+        if (cacheManager != null) {
+            cacheManager.stop();
+        }
+    }
+
+    @Benchmark
+    public Rate consumeOwnKey(ThreadKey threadKey) {
+        return rateLimiter.consume(policy, threadKey.key, null);
+    }
+
+    @Benchmark
+    public Rate consumeSharedKey() {
+        return rateLimiter.consume(policy, "benchmark:shared", null);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.RATE_LIMIT_EVALUATION;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.REQUEST_START_TIME;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
+import com.google.common.collect.Lists;
+import com.netflix.zuul.context.RequestContext;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Per request cost of the rate limit filters, without the cost of the repository. <p> {@link #policy()} measures the
+ * policy matching of {@link AbstractRateLimitFilter#policy(Route, javax.servlet.http.HttpServletRequest)} and
+ * {@link #run()} the key generation and response headers of {@link RateLimitPreFilter#run()} for an already evaluated
+ * request, while {@link #postRun()} measures {@link RateLimitPostFilter#run()} reusing the keys of the pre filter. Run
+ * with the GC profiler, {@code gc.alloc.rate.norm} reports the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RateLimitFilterBenchmark {
+
+    private RateLimitPreFilter filter;
+    private RateLimitPostFilter postFilter;
+    private MockHttpServletRequest request;
+    private Route route;
+
+    @Setup
+    public void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        properties.setKeyPrefix("benchmark");
+        properties.getPolicyList().put("servicea", Lists.newArrayList(
+            policy(100L, new MatchType(RateLimitType.URL, "/api")),
+            policy(1000L, new MatchType(RateLimitType.ORIGIN, "10.0.0.1")),
+            policy(10L, new MatchType(RateLimitType.USER, "admin")),
+            policy(500L, new MatchType(RateLimitType.USER, null))));
+
+        route = new Route("servicea", "/api/resource", "servicea", "/servicea", null, Collections.emptySet());
+        request = new MockHttpServletRequest("GET", "/servicea/api/resource");
+        request.setRemoteAddr("10.0.0.1");
+        request.setRemoteUser("user");
+
+        final Rate rate = new Rate("benchmark", 50L, null, 1000L, null);
+        final RateLimiter rateLimiter = (policy, key, requestTime) -> rate;
+        final RateLimitUtils rateLimitUtils = new DefaultRateLimitUtils(properties);
+        final DefaultRateLimitKeyGenerator keyGenerator = new DefaultRateLimitKeyGenerator(properties, rateLimitUtils);
+        filter = new RateLimitPreFilter(properties, new SingleRouteLocator(route), new UrlPathHelper(), rateLimiter,
+            keyGenerator, rateLimitUtils);
+        postFilter = new RateLimitPostFilter(properties, new SingleRouteLocator(route), new UrlPathHelper(),
+            rateLimiter, keyGenerator, rateLimitUtils);
+        request.setAttribute(REQUEST_START_TIME, System.currentTimeMillis());
+
+        RequestContext context = new RequestContext();
+        context.setRequest(request);
+        context.setResponse(new MockHttpServletResponse());
+        RequestContext.testSetCurrentContext(context);
+        context.put(RATE_LIMIT_EVALUATION, new RateLimitEvaluation(route, filter.policy(route, request), false));
+        filter.run();
+    }
+
+    private static Policy policy(long limit, MatchType matchType) {
+        Policy policy = new Policy();
+        policy.setLimit(limit);
+        policy.getType().add(matchType);
+        return policy;
+    }
+
+    @Benchmark
+    public List<Policy> policy() {
+        return filter.policy(route, request);
+    }
+
+    @Benchmark
+    public Object run() {
+        return filter.run();
+    }
+
+    @Benchmark
+    public Object postRun() {
+        return postFilter.run();
+    }
+
+    private static class SingleRouteLocator implements RouteLocator {
+
+        private final Route route;
+
+        private SingleRouteLocator(Route route) {
+            this.route = route;
+        }
+
+        @Override
+        public Collection<String> getIgnoredPaths() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Route> getRoutes() {
+            return Collections.singletonList(route);
+        }
+
+        @Override
+        public Route getMatchingRoute(String path) {
+            return route;
+        }
+    }
+}
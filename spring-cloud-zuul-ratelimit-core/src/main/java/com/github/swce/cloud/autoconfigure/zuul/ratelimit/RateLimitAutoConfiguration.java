@@ -17,45 +17,76 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit;
 
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyEncoder;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitListener;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.HeavyHitters;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.InMemory;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Jdbc;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.CircuitBreakingRateLimiterPostProcessor;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DenyCachingRateLimiterPostProcessor;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.InMemoryRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.JdbcRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.KeyEncodingRateLimiterPostProcessor;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.LeasingRateLimiterPostProcessor;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.LettuceRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisScriptRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jHazelcastRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jIgniteRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jInfinispanRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jJCacheRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitAsyncFilter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitPostFilter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitPreFilter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterEndpoint;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterMetrics;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.RateLimitMetrics;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.RateLimitMetricsPostProcessor;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitKeyGenerator;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.HashingRateLimitKeyEncoder;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.SecuredRateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.StringToMatchTypeConverter;
 import com.hazelcast.core.IMap;
+import com.lambdaworks.redis.RedisClient;
 import com.netflix.zuul.ZuulFilter;
 import io.github.bucket4j.grid.GridBucketState;
 import io.github.bucket4j.grid.hazelcast.Hazelcast;
 import io.github.bucket4j.grid.ignite.Ignite;
 import io.github.bucket4j.grid.infinispan.Infinispan;
 import io.github.bucket4j.grid.jcache.JCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import javax.cache.Cache;
+import javax.servlet.DispatcherType;
+import javax.sql.DataSource;
 import org.apache.ignite.IgniteCache;
 import org.infinispan.functional.FunctionalMap.ReadWriteMap;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationPropertiesBinding;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.util.UrlPathHelper;
 
 /**
@@ -65,6 +96,8 @@ import org.springframework.web.util.UrlPathHelper;
 @Configuration
 @EnableConfigurationProperties(RateLimitProperties.class)
 @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "enabled", havingValue = "true")
+@AutoConfigureAfter(name = {"io.micrometer.spring.autoconfigure.MetricsAutoConfiguration",
+    "io.micrometer.spring.autoconfigure.CompositeMeterRegistryAutoConfiguration"})
 public class RateLimitAutoConfiguration {
 
     private final UrlPathHelper urlPathHelper = new UrlPathHelper();
@@ -82,11 +115,17 @@ public class RateLimitAutoConfiguration {
     }
 
     @Bean
-    public ZuulFilter rateLimiterPreFilter(final RateLimiter rateLimiter, final RateLimitProperties rateLimitProperties,
-                                           final RouteLocator routeLocator, final RateLimitKeyGenerator rateLimitKeyGenerator,
-                                           final RateLimitUtils rateLimitUtils) {
+    public RateLimitPreFilter rateLimiterPreFilter(final RateLimiter rateLimiter,
+                                                   final RateLimitProperties rateLimitProperties,
+                                                   final RouteLocator routeLocator,
+                                                   final RateLimitKeyGenerator rateLimitKeyGenerator,
+                                                   final RateLimitUtils rateLimitUtils,
+                                                   final ObjectProvider<RateLimitListener> rateLimitListener,
+                                                   final ObjectProvider<HeavyHitterTracker> heavyHitterTracker) {
+        final RateLimitListener listener = rateLimitListener.getIfAvailable();
         return new RateLimitPreFilter(rateLimitProperties, routeLocator, urlPathHelper, rateLimiter,
-                rateLimitKeyGenerator, rateLimitUtils);
+                rateLimitKeyGenerator, rateLimitUtils, listener != null ? listener : RateLimitListener.NONE,
+                heavyHitterTracker.getIfAvailable());
     }
 
     @Bean
@@ -133,9 +172,36 @@ public class RateLimitAutoConfiguration {
         }
 
         @Bean
+        @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = {"redis.script-enabled", "redis.async-enabled"}, havingValue = "false", matchIfMissing = true)
         public RateLimiter redisRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
-                                            @Qualifier("rateLimiterRedisTemplate") final RedisTemplate redisTemplate) {
-            return new RedisRateLimiter(rateLimiterErrorHandler, redisTemplate);
+                                            @Qualifier("rateLimiterRedisTemplate") final RedisTemplate redisTemplate,
+                                            final RateLimitProperties rateLimitProperties) {
+            return new RedisRateLimiter(rateLimiterErrorHandler, redisTemplate,
+                rateLimitProperties.getRedis().isClusterEnabled());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(RateLimiter.class)
+        @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "redis.script-enabled", havingValue = "true")
+        public RateLimiter redisScriptRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                  @Qualifier("rateLimiterRedisTemplate") final RedisTemplate redisTemplate,
+                                                  final RateLimitProperties rateLimitProperties) {
+            return new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate,
+                rateLimitProperties.getRedis().isClusterEnabled());
+        }
+
+        @Configuration
+        @ConditionalOnClass(RedisClient.class)
+        @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "redis.async-enabled", havingValue = "true")
+        public static class LettuceConfiguration {
+
+            @Bean
+            public RateLimiter lettuceRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                  final LettuceConnectionFactory connectionFactory,
+                                                  final RateLimitProperties rateLimitProperties) {
+                return new LettuceRateLimiter(rateLimiterErrorHandler, connectionFactory,
+                    rateLimitProperties.getRedis().isClusterEnabled());
+            }
         }
     }
 
@@ -146,8 +212,9 @@ public class RateLimitAutoConfiguration {
     public static class Bucket4jJCacheConfiguration {
 
         @Bean
-        public RateLimiter jCache4jHazelcastRateLimiter(@Qualifier("RateLimit") final Cache<String, GridBucketState> cache) {
-            return new Bucket4jJCacheRateLimiter(cache);
+        public RateLimiter jCache4jHazelcastRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                        @Qualifier("RateLimit") final Cache<String, GridBucketState> cache) {
+            return new Bucket4jJCacheRateLimiter(rateLimiterErrorHandler, cache);
         }
     }
 
@@ -158,8 +225,9 @@ public class RateLimitAutoConfiguration {
     public static class Bucket4jHazelcastConfiguration {
 
         @Bean
-        public RateLimiter bucket4jHazelcastRateLimiter(@Qualifier("RateLimit") final IMap<String, GridBucketState> rateLimit) {
-            return new Bucket4jHazelcastRateLimiter(rateLimit);
+        public RateLimiter bucket4jHazelcastRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                        @Qualifier("RateLimit") final IMap<String, GridBucketState> rateLimit) {
+            return new Bucket4jHazelcastRateLimiter(rateLimiterErrorHandler, rateLimit);
         }
     }
 
@@ -170,8 +238,9 @@ public class RateLimitAutoConfiguration {
     public static class Bucket4jIgniteConfiguration {
 
         @Bean
-        public RateLimiter bucket4jIgniteRateLimiter(@Qualifier("RateLimit") final IgniteCache<String, GridBucketState> cache) {
-            return new Bucket4jIgniteRateLimiter(cache);
+        public RateLimiter bucket4jIgniteRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                     @Qualifier("RateLimit") final IgniteCache<String, GridBucketState> cache) {
+            return new Bucket4jIgniteRateLimiter(rateLimiterErrorHandler, cache);
         }
     }
 
@@ -182,8 +251,155 @@ public class RateLimitAutoConfiguration {
     public static class Bucket4jInfinispanConfiguration {
 
         @Bean
-        public RateLimiter bucket4jInfinispanRateLimiter(@Qualifier("RateLimit") final ReadWriteMap<String, GridBucketState> readWriteMap) {
-            return new Bucket4jInfinispanRateLimiter(readWriteMap);
+        public RateLimiter bucket4jInfinispanRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                         @Qualifier("RateLimit") final ReadWriteMap<String, GridBucketState> readWriteMap) {
+            return new Bucket4jInfinispanRateLimiter(rateLimiterErrorHandler, readWriteMap);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnMissingBean(RateLimiter.class)
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "repository", havingValue = "IN_MEMORY")
+    public static class InMemoryConfiguration {
+
+        @Bean
+        public RateLimiter inMemoryRateLimiter(final RateLimitProperties rateLimitProperties) {
+            InMemory inMemory = rateLimitProperties.getInMemory();
+            return new InMemoryRateLimiter(inMemory.getMaxKeys(), inMemory.getCleanupInterval());
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(JdbcTemplate.class)
+    @ConditionalOnMissingBean(RateLimiter.class)
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "repository", havingValue = "JDBC")
+    public static class JdbcConfiguration {
+
+        @Bean
+        public RateLimiter jdbcRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                           final DataSource dataSource, final RateLimitProperties rateLimitProperties) {
+            Jdbc jdbc = rateLimitProperties.getJdbc();
+            return new JdbcRateLimiter(rateLimiterErrorHandler, new JdbcTemplate(dataSource), jdbc.getTableName(),
+                jdbc.getFlushInterval());
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "async.enabled", havingValue = "true")
+    public static class AsyncConfiguration {
+
+        @Bean
+        public FilterRegistrationBean rateLimitAsyncFilter(final RateLimitPreFilter rateLimiterPreFilter,
+                                                           final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                                           final RateLimitProperties rateLimitProperties) {
+            FilterRegistrationBean registration = new FilterRegistrationBean(new RateLimitAsyncFilter(
+                rateLimiterPreFilter, rateLimiterErrorHandler, rateLimitProperties.getAsync().getTimeout()));
+            registration.setDispatcherTypes(DispatcherType.REQUEST);
+            registration.setAsyncSupported(true);
+            registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+            return registration;
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "lease.enabled", havingValue = "true")
+    public static class LeaseConfiguration {
+
+        @Bean
+        public static LeasingRateLimiterPostProcessor leasingRateLimiterPostProcessor() {
+            return new LeasingRateLimiterPostProcessor();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "deny-cache.enabled", havingValue = "true")
+    public static class DenyCacheConfiguration {
+
+        @Bean
+        public static DenyCachingRateLimiterPostProcessor denyCachingRateLimiterPostProcessor() {
+            return new DenyCachingRateLimiterPostProcessor();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "circuit-breaker.enabled", havingValue = "true")
+    public static class CircuitBreakerConfiguration {
+
+        @Bean
+        public static CircuitBreakingRateLimiterPostProcessor circuitBreakingRateLimiterPostProcessor() {
+            return new CircuitBreakingRateLimiterPostProcessor();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "key-encoding.enabled", havingValue = "true")
+    public static class KeyEncodingConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(RateLimitKeyEncoder.class)
+        public RateLimitKeyEncoder rateLimitKeyEncoder(final RateLimitProperties rateLimitProperties) {
+            return new HashingRateLimitKeyEncoder(rateLimitProperties.getKeyPrefix());
+        }
+
+        @Bean
+        public static KeyEncodingRateLimiterPostProcessor keyEncodingRateLimiterPostProcessor() {
+            return new KeyEncodingRateLimiterPostProcessor();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "heavy-hitters.enabled", havingValue = "true")
+    public static class HeavyHittersConfiguration {
+
+        @Bean
+        public HeavyHitterTracker heavyHitterTracker(final RateLimitProperties rateLimitProperties) {
+            HeavyHitters heavyHitters = rateLimitProperties.getHeavyHitters();
+            return new HeavyHitterTracker(heavyHitters.getCapacity(), heavyHitters.getWidth(), heavyHitters.getDepth(),
+                heavyHitters.getDecayInterval());
+        }
+
+        @Configuration
+        @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.Endpoint")
+        public static class HeavyHittersEndpointConfiguration {
+
+            @Bean
+            public HeavyHitterEndpoint heavyHitterEndpoint(final HeavyHitterTracker heavyHitterTracker) {
+                return new HeavyHitterEndpoint(heavyHitterTracker);
+            }
+        }
+
+        @Configuration
+        @ConditionalOnClass(MeterRegistry.class)
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "metrics.enabled", havingValue = "true", matchIfMissing = true)
+        public static class HeavyHittersMetricsConfiguration {
+
+            @Bean
+            public HeavyHitterMetrics heavyHitterMetrics(final HeavyHitterTracker heavyHitterTracker,
+                                                         final MeterRegistry meterRegistry) {
+                HeavyHitterMetrics metrics = new HeavyHitterMetrics(heavyHitterTracker);
+                metrics.bindTo(meterRegistry);
+                return metrics;
+            }
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(prefix = RateLimitProperties.PREFIX, name = "metrics.enabled", havingValue = "true", matchIfMissing = true)
+    public static class MetricsConfiguration {
+
+        @Bean
+        public static RateLimitMetricsPostProcessor rateLimitMetricsPostProcessor() {
+            return new RateLimitMetricsPostProcessor();
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(RateLimitListener.class)
+        public RateLimitListener rateLimitMetrics(final MeterRegistry meterRegistry,
+                                                  final RateLimitProperties rateLimitProperties) {
+            return new RateLimitMetrics(meterRegistry, rateLimitProperties);
         }
     }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config;
+
+/**
+ * Encoder of the keys stored by the {@link RateLimiter}, applied after the {@link RateLimitKeyGenerator}.
+ */
+public interface RateLimitKeyEncoder {
+
+    /**
+     * Returns the key stored in the repository for the given generated key. Equal keys must be encoded alike, and
+     * different keys must not collide.
+     *
+     * @param key The key generated by the {@link RateLimitKeyGenerator}
+     * @return Encoded key
+     */
+    String encode(String key);
+}
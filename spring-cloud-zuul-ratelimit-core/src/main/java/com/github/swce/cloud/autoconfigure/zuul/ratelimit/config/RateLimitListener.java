@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+/**
+ * Callback notified of every rate limit decision taken by the pre filter. <p> Implementations are called on the request
+ * path and should not block.
+ */
+public interface RateLimitListener {
+
+    RateLimitListener NONE = new RateLimitListener() {
+    };
+
+    /**
+     * Called when a request is within the policy limits.
+     *
+     * @param route  The {@link Route} of the request, {@code null} when no route matched
+     * @param policy The {@link Policy} applied
+     */
+    default void onAllowed(Route route, Policy policy) {
+    }
+
+    /**
+     * Called when a request exceeds the policy limits.
+     *
+     * @param route  The {@link Route} of the request, {@code null} when no route matched
+     * @param policy The {@link Policy} applied
+     */
+    default void onRejected(Route route, Policy policy) {
+    }
+
+    /**
+     * Called for each policy of a request when the {@link RateLimiter} failed to take a decision on them.
+     *
+     * @param route  The {@link Route} of the request, {@code null} when no route matched
+     * @param policy The {@link Policy} applied
+     * @param e      The failure
+     */
+    default void onError(Route route, Policy policy, RuntimeException e) {
+    }
+}
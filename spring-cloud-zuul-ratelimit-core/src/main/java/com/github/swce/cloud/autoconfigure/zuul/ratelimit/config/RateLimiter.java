@@ -17,6 +17,10 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config;
 
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author Marcos Barbero
@@ -34,4 +38,79 @@ public interface RateLimiter {
      * @return a view of a user's rate request limit
      */
     Rate consume(Policy policy, String key, Long requestTime);
+
+    /**
+     * Consumes a request of several policies, stopping after the first policy whose limit or quota is exceeded, as a
+     * sequence of {@link #consume(Policy, String, Long)} calls would. Implementations may batch the backend calls.
+     *
+     * @param policies    The policies to consume, in evaluation order
+     * @param keys        The keys of the policies, one per policy
+     * @param requestTime The total time it took to handle the request
+     * @return the rates of the consumed policies in the same order, the last one being exceeded if fewer rates than
+     * policies are returned
+     */
+    default List<Rate> consumeAll(List<Policy> policies, List<String> keys, Long requestTime) {
+        final List<Rate> rates = new ArrayList<>(policies.size());
+        for (int i = 0; i < policies.size(); i++) {
+            final Policy policy = policies.get(i);
+            final Rate rate = consume(policy, keys.get(i), requestTime);
+            rates.add(rate);
+            if (isExceeded(policy, rate)) {
+                break;
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Consumes a request of several policies like {@link #consumeAll(List, List, Long)}, without blocking the calling
+     * thread on implementations backed by asynchronous clients. Others consume the policies before returning.
+     *
+     * @param policies    The policies to consume, in evaluation order
+     * @param keys        The keys of the policies, one per policy
+     * @param requestTime The total time it took to handle the request
+     * @return a stage completed with the rates of the consumed policies, or with the error raised while consuming them
+     */
+    default CompletionStage<List<Rate>> consumeAllAsync(List<Policy> policies, List<String> keys, Long requestTime) {
+        final CompletableFuture<List<Rate>> rates = new CompletableFuture<>();
+        try {
+            rates.complete(consumeAll(policies, keys, requestTime));
+        } catch (RuntimeException e) {
+            rates.completeExceptionally(e);
+        }
+        return rates;
+    }
+
+    /**
+     * @return whether {@link #acquire(Policy, String, long)} is supported, decorators answering for the rate limiter
+     * they decorate
+     */
+    default boolean supportsAcquire() {
+        return false;
+    }
+
+    /**
+     * Consumes several requests of the policy limit at once, e.g. to lease them for local use. Only supported when
+     * {@link #supportsAcquire()} is {@code true}. Permits exceeding the limit are not consumed, so that a rejected
+     * block does not spend the rest of the window.
+     *
+     * @param policy  Template for which rates should be created in case there's no rate limit associated with the
+     *                key
+     * @param key     Unique key that identifies a request
+     * @param permits The number of requests to consume
+     * @return a view of a user's rate request limit, the remaining is negative when the permits exceed the limit
+     */
+    default Rate acquire(Policy policy, String key, long permits) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support acquiring permits");
+    }
+
+    /**
+     * @param policy The consumed policy
+     * @param rate   The rate returned for the policy
+     * @return whether the policy limit or quota is exceeded
+     */
+    static boolean isExceeded(Policy policy, Rate rate) {
+        return (policy.getLimit() != null && rate.getRemaining() < 0)
+            || (policy.getQuota() != null && rate.getRemainingQuota() < 0);
+    }
 }
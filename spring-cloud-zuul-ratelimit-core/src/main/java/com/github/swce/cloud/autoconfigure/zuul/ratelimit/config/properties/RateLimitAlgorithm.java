@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties;
+
+/**
+ * Algorithm counting the requests of a policy against its limit and quota.
+ */
+public enum RateLimitAlgorithm {
+    /**
+     * Counts requests in consecutive windows of the refresh interval, a burst across a window boundary can get up to
+     * twice the limit through
+     */
+    FIXED_WINDOW,
+
+    /**
+     * Weights the count of the previous window by its overlap with a window ending now and adds the count of the
+     * current one. Only admitted requests count against the limit
+     */
+    SLIDING_WINDOW,
+
+    /**
+     * Generic cell rate algorithm, spaces requests by the refresh interval divided by the limit and lets a burst of up
+     * to the limit through. Only the theoretical arrival time is stored per key
+     */
+    GCRA,
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties;
+
+/**
+ * Shape of the rate limit response headers added by the pre filter.
+ */
+public enum RateLimitHeadersMode {
+    /**
+     * Adds the {@code X-RateLimit-*} headers of every policy, suffixed with the policy key
+     */
+    VERBOSE,
+
+    /**
+     * Adds a single set of {@code RateLimit-Limit}, {@code RateLimit-Remaining} and {@code RateLimit-Reset} headers
+     * describing the limited policy closest to exhaustion
+     */
+    STANDARD,
+}
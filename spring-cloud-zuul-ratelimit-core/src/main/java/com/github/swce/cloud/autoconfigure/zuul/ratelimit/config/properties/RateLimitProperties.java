@@ -28,6 +28,9 @@ import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -63,12 +66,46 @@ public class RateLimitProperties {
     private boolean enabled;
     private boolean addResponseHeaders = true;
     @NotNull
+    private RateLimitHeadersMode headersMode = RateLimitHeadersMode.VERBOSE;
+    @NotNull
     @Value("${spring.application.name:rate-limit-application}")
     private String keyPrefix;
     @NotNull
     private RateLimitRepository repository;
     private int postFilterOrder = SEND_RESPONSE_FILTER_ORDER - 10;
     private int preFilterOrder = FORM_BODY_WRAPPER_FILTER_ORDER;
+    @NotNull
+    private RateLimitRejectionMode rejectionMode = RateLimitRejectionMode.EXCEPTION;
+    @Valid
+    @NotNull
+    private Redis redis = new Redis();
+    @Valid
+    @NotNull
+    private InMemory inMemory = new InMemory();
+    @Valid
+    @NotNull
+    private Jdbc jdbc = new Jdbc();
+    @Valid
+    @NotNull
+    private Lease lease = new Lease();
+    @Valid
+    @NotNull
+    private Metrics metrics = new Metrics();
+    @Valid
+    @NotNull
+    private Async async = new Async();
+    @Valid
+    @NotNull
+    private HeavyHitters heavyHitters = new HeavyHitters();
+    @Valid
+    @NotNull
+    private DenyCache denyCache = new DenyCache();
+    @Valid
+    @NotNull
+    private KeyEncoding keyEncoding = new KeyEncoding();
+    @Valid
+    @NotNull
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
 
     public List<Policy> getPolicies(String key) {
         if (StringUtils.isEmpty(key)) {
@@ -77,6 +114,226 @@ public class RateLimitProperties {
         return policyList.getOrDefault(key, defaultPolicyList);
     }
 
+    @Data
+    @NoArgsConstructor
+    public static class Redis {
+
+        /**
+         * Consume limit and quota counters with a single atomic Lua script call instead of separate commands.
+         */
+        private boolean scriptEnabled;
+
+        /**
+         * Run the consume script with the asynchronous commands of the Lettuce connection, so asynchronous
+         * consumptions do not hold a thread while Redis answers.
+         */
+        private boolean asyncEnabled;
+
+        /**
+         * Wrap the key prefix and route id of the counters in hash tags, so the counters of a route share a Redis
+         * Cluster slot, and consume the policies of a request with one script call per slot.
+         */
+        private boolean clusterEnabled;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class InMemory {
+
+        /**
+         * Maximum number of keys kept in memory.
+         */
+        @Min(1)
+        private int maxKeys = 100_000;
+
+        /**
+         * Interval in seconds between sweeps of expired keys.
+         */
+        @Min(1)
+        private long cleanupInterval = 10;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Jdbc {
+
+        /**
+         * Table storing the counters.
+         */
+        @NotNull
+        private String tableName = "rate_limit_counter";
+
+        /**
+         * Interval in milliseconds between writes of the counted requests to the database.
+         */
+        @Min(1)
+        private long flushInterval = 1000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Lease {
+
+        /**
+         * Serve requests from blocks of the limit leased from the repository instead of calling it for each request.
+         */
+        private boolean enabled;
+
+        /**
+         * Maximum share of a policy limit leased at once.
+         */
+        @DecimalMin(value = "0", inclusive = false)
+        @DecimalMax("1")
+        private double ratio = 0.05;
+
+        /**
+         * Time in milliseconds a lease should last at the rate observed for its key.
+         */
+        @Min(1)
+        private long interval = 1000;
+
+        /**
+         * Maximum number of keys holding a lease.
+         */
+        @Min(1)
+        private int maxKeys = 10_000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Metrics {
+
+        /**
+         * Publish rate limit metrics to the Micrometer {@code MeterRegistry} when one is available.
+         */
+        private boolean enabled = true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Async {
+
+        /**
+         * Consume the policies in a servlet filter running in asynchronous mode, releasing the container thread while
+         * the repository answers.
+         */
+        private boolean enabled;
+
+        /**
+         * Time in milliseconds to wait for the repository before failing the request.
+         */
+        @Min(1)
+        private long timeout = 5000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class HeavyHitters {
+
+        /**
+         * Track the rate limit keys seen most often, exposed by an actuator endpoint and as metrics.
+         */
+        private boolean enabled;
+
+        /**
+         * Number of keys tracked.
+         */
+        @Min(1)
+        private int capacity = 100;
+
+        /**
+         * Counters per row of the sketch estimating the key counts, rounded up to a power of two.
+         */
+        @Min(1)
+        private int width = 2048;
+
+        /**
+         * Rows of the sketch estimating the key counts.
+         */
+        @Min(1)
+        private int depth = 4;
+
+        /**
+         * Interval in seconds between halvings of the counts.
+         */
+        @Min(1)
+        private long decayInterval = 60;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class DenyCache {
+
+        /**
+         * Reject keys the repository reported as exceeded from memory until their reset, without calling it again.
+         */
+        private boolean enabled;
+
+        /**
+         * Maximum number of keys rejected from memory.
+         */
+        @Min(1)
+        private int maxKeys = 10_000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class KeyEncoding {
+
+        /**
+         * Store fixed-length hashes of the keys in the repository instead of the keys themselves.
+         */
+        private boolean enabled;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class CircuitBreaker {
+
+        /**
+         * Count requests in memory while the repository fails or answers slowly, until a probe succeeds.
+         */
+        private boolean enabled;
+
+        /**
+         * Share of the calls to the repository failing or answering slowly that opens the breaker.
+         */
+        @DecimalMin(value = "0", inclusive = false)
+        @DecimalMax("1")
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * Time in milliseconds from which a call to the repository counts as failed.
+         */
+        @Min(1)
+        private long slowCallDuration = 1000;
+
+        /**
+         * Calls to the repository needed in a window before the breaker may open.
+         */
+        @Min(1)
+        private int minimumCalls = 20;
+
+        /**
+         * Time in milliseconds during which the calls to the repository are counted.
+         */
+        @Min(1)
+        private long window = 10_000;
+
+        /**
+         * Time in milliseconds the breaker stays open before probing the repository.
+         */
+        @Min(1)
+        private long openDuration = 5000;
+
+        /**
+         * Number of nodes sharing the limits while the breaker is open, when the discovery client does not know the
+         * instances of the application.
+         */
+        @Min(1)
+        private int nodes = 1;
+    }
+
     @Data
     @NoArgsConstructor
     public static class Policy {
@@ -88,6 +345,9 @@ public class RateLimitProperties {
 
         private Long quota;
 
+        @NotNull
+        private RateLimitAlgorithm algorithm = RateLimitAlgorithm.FIXED_WINDOW;
+
         @NotNull
         private boolean breakOnMatch;
 
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties;
+
+/**
+ * How the pre filter surfaces a request that exceeded one of its policies.
+ */
+public enum RateLimitRejectionMode {
+    /**
+     * Throws a {@link com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitExceededException} so the
+     * Zuul error filters render the response
+     */
+    EXCEPTION,
+
+    /**
+     * Sets the 429 status on the response and stops routing without throwing
+     */
+    RESPONSE,
+}
@@ -47,4 +47,14 @@ public enum RateLimitRepository {
      * Uses Bucket4j Infinispan as data storage
      */
     BUCKET4J_INFINISPAN,
+
+    /**
+     * Uses a local in-memory map as data storage
+     */
+    IN_MEMORY,
+
+    /**
+     * Uses a relational database through JDBC as data storage, counting in memory and writing behind
+     */
+    JDBC,
 }
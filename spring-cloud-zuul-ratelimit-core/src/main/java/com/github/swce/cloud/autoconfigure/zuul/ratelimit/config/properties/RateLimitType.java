@@ -17,7 +17,6 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties;
 
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
-import java.util.Optional;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.cloud.netflix.zuul.filters.Route;
@@ -64,7 +63,7 @@ public enum RateLimitType {
 
         @Override
         public String key(HttpServletRequest request, Route route, RateLimitUtils rateLimitUtils, String matcher) {
-            return Optional.ofNullable(route).map(Route::getPath).orElse(StringUtils.EMPTY);
+            return route != null ? route.getPath() : StringUtils.EMPTY;
         }
     },
 
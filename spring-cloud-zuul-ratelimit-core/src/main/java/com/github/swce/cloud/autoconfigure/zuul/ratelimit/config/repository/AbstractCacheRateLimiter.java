@@ -23,7 +23,9 @@ import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 
 /**
- * Bucket4j rate limiter configuration.
+ * Base class for rate limiters backed by storages with atomic counter operations. <p> No local locking is done here,
+ * same-key correctness relies on the atomicity of the underlying storage operations (e.g. Redis {@code INCRBY} or the
+ * Bucket4j grid entry processors).
  *
  * @author Liel Chayoun
  * @since 2018-04-06
@@ -31,18 +33,56 @@ import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.Rate
 public abstract class AbstractCacheRateLimiter implements RateLimiter {
 
     @Override
-    public synchronized Rate consume(Policy policy, String key, Long requestTime) {
+    public Rate consume(Policy policy, String key, Long requestTime) {
         final Long refreshInterval = policy.getRefreshInterval();
         final Long quota = policy.getQuota() != null ? SECONDS.toMillis(policy.getQuota()) : null;
         final Rate rate = new Rate(key, policy.getLimit(), quota, null, null);
 
-        calcRemainingLimit(policy.getLimit(), refreshInterval, requestTime, key, rate);
+        calcRemainingLimit(policy.getLimit(), refreshInterval, requestTime == null ? 1L : 0L, key, rate);
         calcRemainingQuota(quota, refreshInterval, requestTime, key, rate);
 
         return rate;
     }
 
+    @Override
+    public boolean supportsAcquire() {
+        return true;
+    }
+
+    @Override
+    public Rate acquire(Policy policy, String key, long permits) {
+        final Rate rate = new Rate(key, policy.getLimit(), null, null, null);
+        calcRemainingLimit(policy.getLimit(), policy.getRefreshInterval(), permits, key, rate);
+        if (permits > 0 && rate.getRemaining() != null && rate.getRemaining() < 0) {
+            releaseLimit(policy.getLimit(), policy.getRefreshInterval(), permits, key);
+        }
+        return rate;
+    }
+
+    /**
+     * Gives back the permits of a rejected {@link #acquire(Policy, String, long)} by consuming them negatively.
+     * Storages only consuming permits within the limit override it to do nothing.
+     */
+    protected void releaseLimit(Long limit, Long refreshInterval, long permits, String key) {
+        calcRemainingLimit(limit, refreshInterval, -permits, key, new Rate(key, limit, null, null, null));
+    }
+
     protected abstract void calcRemainingLimit(Long limit, Long refreshInterval, Long requestTime, String key, Rate rate);
 
+    /**
+     * Consumes the usage one request at a time through {@link #calcRemainingLimit(Long, Long, Long, String, Rate)},
+     * storages able to add the whole usage at once override it.
+     *
+     * @param usage The number of requests to consume, {@code 0} only reads the remaining limit
+     */
+    protected void calcRemainingLimit(Long limit, Long refreshInterval, long usage, String key, Rate rate) {
+        if (usage <= 0) {
+            calcRemainingLimit(limit, refreshInterval, Long.valueOf(0L), key, rate);
+        }
+        for (long i = 0; i < usage; i++) {
+            calcRemainingLimit(limit, refreshInterval, (Long) null, key, rate);
+        }
+    }
+
     protected abstract void calcRemainingQuota(Long quota, Long refreshInterval, Long requestTime, String key, Rate rate);
 }
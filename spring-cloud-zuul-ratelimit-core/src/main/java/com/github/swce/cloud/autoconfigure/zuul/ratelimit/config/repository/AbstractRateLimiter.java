@@ -21,36 +21,81 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.google.common.util.concurrent.Striped;
 import java.util.Date;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.locks.Lock;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Abstract implementation for {@link RateLimiter}.
+ * Abstract implementation for {@link RateLimiter}. <p> The read-modify-write cycle of a rate is guarded by a bounded
+ * array of lock stripes selected by the rate key, so requests for unrelated keys are not serialized on a single
+ * monitor.
  *
  * @author Liel Chayoun
  * @author Marcos Barbero
  * @since 2017-08-28
  */
 @Slf4j
-@RequiredArgsConstructor
 public abstract class AbstractRateLimiter implements RateLimiter {
 
+    static final int DEFAULT_LOCK_STRIPES = 256;
+
     private final RateLimiterErrorHandler rateLimiterErrorHandler;
+    private final Striped<Lock> locks;
+
+    protected AbstractRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler) {
+        this(rateLimiterErrorHandler, DEFAULT_LOCK_STRIPES);
+    }
+
+    protected AbstractRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler, final int lockStripes) {
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+        this.locks = Striped.lock(lockStripes);
+    }
 
     protected abstract Rate getRate(String key);
     protected abstract void saveRate(Rate rate);
 
     @Override
-    public synchronized Rate consume(final Policy policy, final String key, final Long requestTime) {
-        Rate rate = this.create(policy, key);
-        updateRate(policy, rate, requestTime);
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        return consume(policy, key, requestTime, 1L, false);
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return true;
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        return consume(policy, key, null, permits, true);
+    }
+
+    /**
+     * @param admitOnly Whether the rate is left as it was when the permits exceed the limit
+     */
+    private Rate consume(final Policy policy, final String key, final Long requestTime, final long permits,
+                         final boolean admitOnly) {
+        final Lock lock = locks.get(key);
+        lock.lock();
         try {
-            saveRate(rate);
-        } catch (RuntimeException e) {
-            rateLimiterErrorHandler.handleSaveError(key, e);
+            Rate rate = this.create(policy, key);
+            if (admitOnly && policy.getLimit() != null && rate.getRemaining() < permits) {
+                // the stored rate may be a managed entity, the rejected permits are counted on a copy
+                rate = new Rate(key, rate.getRemaining(), rate.getRemainingQuota(), rate.getReset(),
+                    rate.getExpiration());
+                updateRate(policy, rate, requestTime, permits);
+                return rate;
+            }
+            updateRate(policy, rate, requestTime, permits);
+            try {
+                saveRate(rate);
+            } catch (RuntimeException e) {
+                rateLimiterErrorHandler.handleSaveError(key, e);
+            }
+            return rate;
+        } finally {
+            lock.unlock();
         }
-        return rate;
     }
 
     private Rate create(final Policy policy, final String key) {
@@ -73,13 +118,13 @@ public abstract class AbstractRateLimiter implements RateLimiter {
         return new Rate(key, limit, quota, refreshInterval, expiration);
     }
 
-    private void updateRate(final Policy policy, final Rate rate, final Long requestTime) {
+    private void updateRate(final Policy policy, final Rate rate, final Long requestTime, final long permits) {
         if (rate.getReset() > 0) {
             Long reset = rate.getExpiration().getTime() - System.currentTimeMillis();
             rate.setReset(reset);
         }
         if (policy.getLimit() != null && requestTime == null) {
-            rate.setRemaining(Math.max(-1, rate.getRemaining() - 1));
+            rate.setRemaining(Math.max(-1, rate.getRemaining() - permits));
         }
         if (policy.getQuota() != null && requestTime != null) {
             rate.setRemainingQuota(Math.max(-1, rate.getRemainingQuota() - requestTime));
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * State of the circuit breaker guarding a rate limit repository, shared by the {@link CircuitBreakingRateLimiter} and
+ * the {@link CircuitBreakingRateLimiterErrorHandler}, which counts the errors repositories report without throwing.
+ * <p> Calls are counted in tumbling windows of {@code window} milliseconds, and a call failing, or lasting
+ * {@code slowCallDuration} milliseconds or more, counts as a failure. The breaker opens once a window holds
+ * {@code minimumCalls} calls and at least {@code failureRateThreshold} of them failed. After {@code openDuration}
+ * milliseconds a single call probes the repository, closing the breaker if it succeeds in time and opening it again
+ * otherwise, or once it lasts {@code slowCallDuration} milliseconds without completing. The number of nodes sharing the limits is read each time the breaker opens.
+ */
+@Slf4j
+final class CircuitBreakerState {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Immutable snapshot of the breaker, so that the end of the open period or of the probe, and the node count, are
+     * published together with the state they belong to.
+     */
+    private static final class Status {
+
+        private final State state;
+        private final long until;
+        private final int nodes;
+
+        private Status(State state, long until, int nodes) {
+            this.state = state;
+            this.until = until;
+            this.nodes = nodes;
+        }
+    }
+
+    private final double failureRateThreshold;
+    private final long slowCallDuration;
+    private final int minimumCalls;
+    private final long window;
+    private final long openDuration;
+    private final IntSupplier nodes;
+    private final LongSupplier clock;
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, 0L, 1));
+    private final AtomicLong windowStart;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    CircuitBreakerState(final double failureRateThreshold, final long slowCallDuration, final int minimumCalls,
+                        final long window, final long openDuration, final IntSupplier nodes) {
+        this(failureRateThreshold, slowCallDuration, minimumCalls, window, openDuration, nodes,
+            System::currentTimeMillis);
+    }
+
+    CircuitBreakerState(final double failureRateThreshold, final long slowCallDuration, final int minimumCalls,
+                        final long window, final long openDuration, final IntSupplier nodes,
+                        final LongSupplier clock) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.minimumCalls = minimumCalls;
+        this.window = window;
+        this.openDuration = openDuration;
+        this.nodes = nodes;
+        this.clock = clock;
+        this.windowStart = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Opens the breaker again when the probe outlived {@code slowCallDuration}, since a repository call may never
+     * complete, and the outcome of that probe is then ignored.
+     *
+     * @return the call to the repository to report the outcome of, or {@code null} when the repository must not be
+     * called
+     */
+    Call start() {
+        final Status current = status.get();
+        final long now = clock.getAsLong();
+        if (current.state == State.CLOSED) {
+            return new Call(now, null);
+        }
+        if (current.state == State.OPEN && now >= current.until) {
+            final Status probing = new Status(State.HALF_OPEN, now + slowCallDuration, current.nodes);
+            if (status.compareAndSet(current, probing)) {
+                return new Call(now, probing);
+            }
+        } else if (current.state == State.HALF_OPEN && now >= current.until && open(current, now)) {
+            log.warn("Rate limit repository probe timed out, counting requests in memory for {} ms", openDuration);
+        }
+        return null;
+    }
+
+    /**
+     * Counts an error reported by the repository while answering a call.
+     */
+    void error() {
+        errors.incrementAndGet();
+        if (status.get().state == State.CLOSED) {
+            final long now = clock.getAsLong();
+            roll(now);
+            failures.incrementAndGet();
+            evaluate(now);
+        }
+    }
+
+    boolean isOpen() {
+        return status.get().state != State.CLOSED;
+    }
+
+    int getNodeCount() {
+        return status.get().nodes;
+    }
+
+    private void record(boolean failed, long now) {
+        roll(now);
+        calls.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        evaluate(now);
+    }
+
+    private void roll(long now) {
+        final long start = windowStart.get();
+        if (now - start >= window && windowStart.compareAndSet(start, now)) {
+            calls.set(0);
+            failures.set(0);
+        }
+    }
+
+    private void evaluate(long now) {
+        final Status current = status.get();
+        final long currentCalls = calls.get();
+        if (current.state == State.CLOSED && currentCalls >= minimumCalls
+            && failures.get() >= currentCalls * failureRateThreshold && open(current, now)) {
+            log.warn("Rate limit repository failing, counting requests in memory for {} ms", openDuration);
+        }
+    }
+
+    /**
+     * Counts the nodes before publishing the open state, so no call sees the breaker open without the end of the open
+     * period and the node count it was opened with.
+     */
+    private boolean open(Status current, long now) {
+        int nodeCount = current.nodes;
+        try {
+            nodeCount = Math.max(1, nodes.getAsInt());
+        } catch (RuntimeException e) {
+            log.warn("Failed counting the nodes sharing the rate limits, keeping {}", nodeCount, e);
+        }
+        return status.compareAndSet(current, new Status(State.OPEN, now + openDuration, nodeCount));
+    }
+
+    private void close(Status current, long now) {
+        windowStart.set(now);
+        calls.set(0);
+        failures.set(0);
+        if (status.compareAndSet(current, new Status(State.CLOSED, 0L, current.nodes))) {
+            log.info("Rate limit repository recovered");
+        }
+    }
+
+    /**
+     * A call to the repository, the probe deciding whether the breaker closes when it is half open.
+     */
+    final class Call {
+
+        private final long start;
+        private final Status probe;
+        private final long errorsAtStart;
+
+        private Call(long start, Status probe) {
+            this.start = start;
+            this.probe = probe;
+            this.errorsAtStart = probe != null ? errors.get() : 0L;
+        }
+
+        /**
+         * @param error The error the call raised, or {@code null}
+         */
+        void end(Throwable error) {
+            final long now = clock.getAsLong();
+            final boolean failed = error != null || now - start >= slowCallDuration;
+            if (probe == null) {
+                record(failed, now);
+            } else if (failed || errors.get() != errorsAtStart) {
+                open(probe, now);
+            } else {
+                close(probe, now);
+            }
+        }
+    }
+}
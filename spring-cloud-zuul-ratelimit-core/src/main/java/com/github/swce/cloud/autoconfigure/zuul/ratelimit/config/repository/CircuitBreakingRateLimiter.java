@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Guards a shared {@link RateLimiter} with a circuit breaker, so that a failing or slow repository does not cost every
+ * request a client timeout. <p> While the breaker is open, requests are counted by a local fallback limiter instead,
+ * against limits and quotas divided by the number of nodes sharing them, so the cluster as a whole keeps about the
+ * configured rates. Local counts are not carried over to the repository when the breaker closes again. Errors raised
+ * by the repository are still raised to the caller.
+ */
+public class CircuitBreakingRateLimiter implements RateLimiter {
+
+    private final RateLimiter delegate;
+    private final RateLimiter fallback;
+    private final CircuitBreakerState breaker;
+
+    CircuitBreakingRateLimiter(final RateLimiter delegate, final RateLimiter fallback,
+                               final CircuitBreakerState breaker) {
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.breaker = breaker;
+    }
+
+    public RateLimiter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        final CircuitBreakerState.Call call = breaker.start();
+        if (call == null) {
+            return fallback.consume(share(policy), key, requestTime);
+        }
+        try {
+            final Rate rate = delegate.consume(policy, key, requestTime);
+            call.end(null);
+            return rate;
+        } catch (RuntimeException e) {
+            call.end(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        final CircuitBreakerState.Call call = breaker.start();
+        if (call == null) {
+            return fallback.consumeAll(share(policies), keys, requestTime);
+        }
+        try {
+            final List<Rate> rates = delegate.consumeAll(policies, keys, requestTime);
+            call.end(null);
+            return rates;
+        } catch (RuntimeException e) {
+            call.end(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reports the outcome of the call when the returned stage completes.
+     */
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        final CircuitBreakerState.Call call = breaker.start();
+        if (call == null) {
+            return fallback.consumeAllAsync(share(policies), keys, requestTime);
+        }
+        final CompletionStage<List<Rate>> rates;
+        try {
+            rates = delegate.consumeAllAsync(policies, keys, requestTime);
+        } catch (RuntimeException e) {
+            call.end(e);
+            throw e;
+        }
+        return rates.whenComplete((result, error) -> call.end(error));
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return delegate.supportsAcquire();
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        final CircuitBreakerState.Call call = breaker.start();
+        if (call == null) {
+            return fallback.acquire(share(policy), key, permits);
+        }
+        try {
+            final Rate rate = delegate.acquire(policy, key, permits);
+            call.end(null);
+            return rate;
+        } catch (RuntimeException e) {
+            call.end(e);
+            throw e;
+        }
+    }
+
+    private List<Policy> share(List<Policy> policies) {
+        if (breaker.getNodeCount() == 1) {
+            return policies;
+        }
+        final List<Policy> shares = new ArrayList<>(policies.size());
+        for (Policy policy : policies) {
+            shares.add(share(policy));
+        }
+        return shares;
+    }
+
+    /**
+     * @return a copy of the policy with the limit and the quota of a single node
+     */
+    private Policy share(Policy policy) {
+        final int nodes = breaker.getNodeCount();
+        if (nodes == 1) {
+            return policy;
+        }
+        final Policy share = new Policy();
+        share.setRefreshInterval(policy.getRefreshInterval());
+        share.setLimit(share(policy.getLimit(), nodes));
+        share.setQuota(share(policy.getQuota(), nodes));
+        share.setAlgorithm(policy.getAlgorithm());
+        share.setBreakOnMatch(policy.isBreakOnMatch());
+        share.setType(policy.getType());
+        return share;
+    }
+
+    private static Long share(Long value, int nodes) {
+        return value == null ? null : Math.max(1L, (value + nodes - 1) / nodes);
+    }
+}
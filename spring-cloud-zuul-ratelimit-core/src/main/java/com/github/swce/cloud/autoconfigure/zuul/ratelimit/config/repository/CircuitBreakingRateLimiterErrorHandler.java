@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+/**
+ * Counts the errors reported to a {@link RateLimiterErrorHandler} towards opening the circuit breaker before handing
+ * them over, as most repositories report their errors instead of raising them.
+ */
+public class CircuitBreakingRateLimiterErrorHandler implements RateLimiterErrorHandler {
+
+    private final RateLimiterErrorHandler delegate;
+    private final CircuitBreakerState breaker;
+
+    CircuitBreakingRateLimiterErrorHandler(final RateLimiterErrorHandler delegate, final CircuitBreakerState breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public void handleSaveError(final String key, final Exception e) {
+        breaker.error();
+        delegate.handleSaveError(key, e);
+    }
+
+    @Override
+    public void handleFetchError(final String key, final Exception e) {
+        breaker.error();
+        delegate.handleFetchError(key, e);
+    }
+
+    @Override
+    public void handleError(final String msg, final Exception e) {
+        breaker.error();
+        delegate.handleError(msg, e);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.CircuitBreaker;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.InMemory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+/**
+ * Wraps the {@link RateLimiter} bean with a {@link CircuitBreakingRateLimiter}, and the {@link
+ * RateLimiterErrorHandler} bean with a {@link CircuitBreakingRateLimiterErrorHandler} sharing its breaker. Runs right
+ * after the metrics and key encoding post processors, so leases and denied keys are served in front of the breaker.
+ * <p> The nodes sharing the limits are the instances of the application known to the {@link DiscoveryClient}, or
+ * {@code circuit-breaker.nodes} when there is none. <p> The in-memory fallbacks are destroyed with the beans they
+ * were created for, since the container only destroys the original beans, not the ones returned in their place.
+ */
+public class CircuitBreakingRateLimiterPostProcessor implements DestructionAwareBeanPostProcessor, BeanFactoryAware,
+    Ordered {
+
+    private final Map<String, InMemoryRateLimiter> fallbacks = new ConcurrentHashMap<>();
+    private BeanFactory beanFactory;
+    private CircuitBreakerState breaker;
+
+    @Override
+    public void setBeanFactory(final BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 2;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (bean instanceof RateLimiter && !(bean instanceof CircuitBreakingRateLimiter)) {
+            InMemoryRateLimiter fallback = createFallback(
+                beanFactory.getBean(RateLimitProperties.class).getInMemory());
+            fallbacks.put(beanName, fallback);
+            return new CircuitBreakingRateLimiter((RateLimiter) bean, fallback, breaker());
+        }
+        if (bean instanceof RateLimiterErrorHandler && !(bean instanceof CircuitBreakingRateLimiterErrorHandler)) {
+            return new CircuitBreakingRateLimiterErrorHandler((RateLimiterErrorHandler) bean, breaker());
+        }
+        return bean;
+    }
+
+    @Override
+    public void postProcessBeforeDestruction(final Object bean, final String beanName) {
+        InMemoryRateLimiter fallback = fallbacks.remove(beanName);
+        if (fallback != null) {
+            fallback.destroy();
+        }
+    }
+
+    @Override
+    public boolean requiresDestruction(final Object bean) {
+        return bean instanceof RateLimiter;
+    }
+
+    InMemoryRateLimiter createFallback(InMemory inMemory) {
+        return new InMemoryRateLimiter(inMemory.getMaxKeys(), inMemory.getCleanupInterval());
+    }
+
+    private synchronized CircuitBreakerState breaker() {
+        if (breaker == null) {
+            CircuitBreaker properties = beanFactory.getBean(RateLimitProperties.class).getCircuitBreaker();
+            breaker = new CircuitBreakerState(properties.getFailureRateThreshold(), properties.getSlowCallDuration(),
+                properties.getMinimumCalls(), properties.getWindow(), properties.getOpenDuration(),
+                () -> nodes(properties.getNodes()));
+        }
+        return breaker;
+    }
+
+    private int nodes(int defaultNodes) {
+        String serviceId = beanFactory.getBean(Environment.class).getProperty("spring.application.name");
+        if (serviceId == null) {
+            return defaultNodes;
+        }
+        try {
+            int instances = beanFactory.getBean(DiscoveryClient.class).getInstances(serviceId).size();
+            return instances > 0 ? instances : defaultNodes;
+        } catch (NoSuchBeanDefinitionException e) {
+            return defaultNodes;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitAlgorithm;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+
+/**
+ * Keys and arguments of a {@code ratelimit-consume.lua} call consuming the policies of a request, and the rates read
+ * from its result, whichever client runs the script. <p> On Redis Cluster the keys of a script call must hash to the
+ * same slot: the key prefix and route id the keys of a request share are then wrapped in a hash tag, so the counters of
+ * a request share a slot, and {@link #bySlot(List, List, long, Long, boolean)} splits the policies into calls of
+ * consecutive policies sharing one, which is a single call for keys built by the default key generator.
+ */
+final class ConsumeScriptCall {
+
+    private static final char SEPARATOR = ':';
+
+    private static final String FIXED = "0";
+    private static final String SLIDING_ADMITTED = "1";
+    private static final String SLIDING_ALL = "2";
+    private static final String GCRA_ADMITTED = "3";
+    private static final String GCRA_ALL = "4";
+    private static final String FIXED_ADMITTED = "5";
+
+    private final List<Policy> policies;
+    private final List<String> keys;
+    private final boolean withQuota;
+    private final List<Rate> rates;
+    private final List<String> counters;
+    private final List<String> args;
+
+    /**
+     * @param usage     The requests to count on the limits
+     * @param withQuota Whether the quotas are consumed and the call stops after the first exceeded policy, otherwise
+     *                  permits are acquired and only counted when they stay within the limit, whatever the algorithm
+     * @param hashTags  Whether the counters are wrapped in hash tags
+     */
+    ConsumeScriptCall(final List<Policy> policies, final List<String> keys, final long usage, final Long requestTime,
+                      final boolean withQuota, final boolean hashTags) {
+        final int size = policies.size();
+        this.policies = policies;
+        this.keys = keys;
+        this.withQuota = withQuota;
+        this.rates = new ArrayList<>(size);
+        this.counters = new ArrayList<>(2 * size);
+        this.args = new ArrayList<>(10 * size + 1);
+        // only used by servers that cannot read their own time in scripts
+        args.add(String.valueOf(System.currentTimeMillis()));
+        for (int i = 0; i < size; i++) {
+            final Policy policy = policies.get(i);
+            final Long limit = policy.getLimit();
+            final Long quota = withQuota && policy.getQuota() != null ? SECONDS.toMillis(policy.getQuota()) : null;
+            final Long refreshInterval = policy.getRefreshInterval();
+            final String key = keys.get(i);
+            rates.add(new Rate(key, limit, quota, SECONDS.toMillis(refreshInterval), null));
+            final String counter = hashTags ? hashTag(key) : key;
+            if (limit != null) {
+                counters.add(counter);
+                addArgs(usage, refreshInterval, limit, quota == null, limitMode(policy.getAlgorithm(), withQuota));
+            }
+            if (quota != null) {
+                counters.add(counter + RateLimiter.QUOTA_SUFFIX);
+                long quotaUsage = requestTime != null ? requestTime : 0L;
+                addArgs(quotaUsage, refreshInterval, quota, true, mode(policy.getAlgorithm(), false));
+            }
+        }
+    }
+
+    /**
+     * Splits the policies into hash tagged calls of consecutive policies whose counters hash to the same cluster slot,
+     * keeping their order so that the calls following an exceeded one can be skipped.
+     */
+    static List<ConsumeScriptCall> bySlot(final List<Policy> policies, final List<String> keys, final long usage,
+                                          final Long requestTime, final boolean withQuota) {
+        final List<ConsumeScriptCall> calls = new ArrayList<>();
+        int from = 0;
+        int slot = -1;
+        for (int i = 0; i < keys.size(); i++) {
+            int keySlot = ClusterSlotHashUtil.calculateSlot(hashTag(keys.get(i)));
+            if (i > from && keySlot != slot) {
+                calls.add(new ConsumeScriptCall(policies.subList(from, i), keys.subList(from, i), usage, requestTime,
+                    withQuota, true));
+                from = i;
+            }
+            slot = keySlot;
+        }
+        calls.add(new ConsumeScriptCall(policies.subList(from, keys.size()), keys.subList(from, keys.size()), usage,
+            requestTime, withQuota, true));
+        return calls;
+    }
+
+    /**
+     * @return the key with its part up to the second {@code ':'}, i.e. the key prefix and the route id, wrapped in a
+     * hash tag, so that Redis Cluster places the counters of a route in the same slot, or the whole key wrapped in a
+     * hash tag when it has no such part
+     */
+    static String hashTag(final String key) {
+        final int prefixEnd = key.indexOf(SEPARATOR);
+        final int routeEnd = prefixEnd < 0 ? -1 : key.indexOf(SEPARATOR, prefixEnd + 1);
+        if (routeEnd < 0) {
+            return "{" + key + "}";
+        }
+        return "{" + key.substring(0, routeEnd) + "}" + key.substring(routeEnd);
+    }
+
+    List<String> getCounters() {
+        return counters;
+    }
+
+    List<String> getArgs() {
+        return args;
+    }
+
+    String getErrorMessage() {
+        return "Failed retrieving rate for " + String.join(", ", keys) + ", will return the current value";
+    }
+
+    /**
+     * @param rates The rates returned by {@link #getRates(List)}
+     * @return whether the following policies of the request must be left untouched
+     */
+    boolean isExceeded(final List<Rate> rates) {
+        final int last = rates.size() - 1;
+        return withQuota && last >= 0 && RateLimiter.isExceeded(policies.get(last), rates.get(last));
+    }
+
+    /**
+     * @param results The script result, or {@code null} when it failed, to answer with the policy limits
+     * @return the rates of the consumed policies, the last one being exceeded if fewer rates than policies are returned
+     */
+    List<Rate> getRates(final List<Long> results) {
+        int index = 0;
+        for (int i = 0; i < rates.size(); i++) {
+            final Rate rate = rates.get(i);
+            final Policy policy = policies.get(i);
+            if (policy.getLimit() != null) {
+                rate.setRemaining(remaining(policy.getLimit(), results, index++, rate));
+            }
+            if (rate.getRemainingQuota() != null) {
+                rate.setRemainingQuota(remaining(rate.getRemainingQuota(), results, index++, rate));
+            }
+            if (withQuota && RateLimiter.isExceeded(policy, rate)) {
+                return rates.subList(0, i + 1);
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Fixed windows count the rejected requests, so that a client over the limit keeps being rejected, but not the
+     * rejected acquired permits.
+     */
+    private static String limitMode(RateLimitAlgorithm algorithm, boolean withQuota) {
+        return algorithm == RateLimitAlgorithm.FIXED_WINDOW && !withQuota ? FIXED_ADMITTED : mode(algorithm, true);
+    }
+
+    /**
+     * @param admitOnly Whether the usage is only counted when it stays within the limit
+     */
+    private static String mode(RateLimitAlgorithm algorithm, boolean admitOnly) {
+        switch (algorithm) {
+            case SLIDING_WINDOW:
+                return admitOnly ? SLIDING_ADMITTED : SLIDING_ALL;
+            case GCRA:
+                return admitOnly ? GCRA_ADMITTED : GCRA_ALL;
+            default:
+                return FIXED;
+        }
+    }
+
+    private void addArgs(long usage, Long refreshInterval, Long limit, boolean last, String mode) {
+        args.add(String.valueOf(usage));
+        args.add(String.valueOf(refreshInterval));
+        args.add(String.valueOf(limit));
+        args.add(last ? "1" : "0");
+        args.add(mode);
+    }
+
+    private static Long remaining(Long limit, List<Long> results, int index, Rate rate) {
+        if (results == null || results.size() < 2 * index + 2) {
+            return limit;
+        }
+        Long current = results.get(2 * index);
+        rate.setReset(results.get(2 * index + 1));
+        return Math.max(-1, limit - current);
+    }
+}
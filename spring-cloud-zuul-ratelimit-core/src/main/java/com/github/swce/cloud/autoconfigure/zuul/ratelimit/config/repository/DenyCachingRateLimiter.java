@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rejects from memory the keys a {@link RateLimiter} already reported as exceeded, until the reset it reported. <p>
+ * Under a flood most requests come from keys that are already exceeded, and would otherwise reach the shared backend
+ * only to be rejected again. The rejected requests are not counted by the backend, which does not change its decisions
+ * as they are over the limit anyway. <p> At most {@code maxKeys} keys are denied at once: when the bound is reached,
+ * a sample of the denials is read, and the ended ones are removed, or else the one ending first. An evicted key only
+ * costs one more call to the delegate.
+ */
+public class DenyCachingRateLimiter implements RateLimiter {
+
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private final ConcurrentMap<String, Denial> denials = new ConcurrentHashMap<>();
+    private final RateLimiter delegate;
+    private final int maxKeys;
+
+    public DenyCachingRateLimiter(final RateLimiter delegate, final int maxKeys) {
+        this.delegate = delegate;
+        this.maxKeys = maxKeys;
+    }
+
+    public RateLimiter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        if (requestTime == null) {
+            final Rate denied = denied(key, System.currentTimeMillis());
+            if (denied != null) {
+                return denied;
+            }
+        }
+        return record(policy, delegate.consume(policy, key, requestTime));
+    }
+
+    /**
+     * Hands the policies preceding the first denied one over to the delegate, and completes the rates with the denial
+     * unless one of them was exceeded.
+     */
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        final int denied = firstDenied(keys, requestTime);
+        if (denied < 0) {
+            return record(policies, delegate.consumeAll(policies, keys, requestTime));
+        }
+        final List<Rate> rates = denied > 0
+            ? record(policies, delegate.consumeAll(policies.subList(0, denied), keys.subList(0, denied), null))
+            : new ArrayList<>(1);
+        return complete(policies, keys, denied, rates);
+    }
+
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        final int denied = firstDenied(keys, requestTime);
+        if (denied < 0) {
+            return delegate.consumeAllAsync(policies, keys, requestTime).thenApply(rates -> record(policies, rates));
+        }
+        if (denied == 0) {
+            return CompletableFuture.completedFuture(complete(policies, keys, 0, new ArrayList<>(1)));
+        }
+        return delegate.consumeAllAsync(policies.subList(0, denied), keys.subList(0, denied), null)
+            .thenApply(rates -> complete(policies, keys, denied, record(policies, rates)));
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return delegate.supportsAcquire();
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        return delegate.acquire(policy, key, permits);
+    }
+
+    int size() {
+        return denials.size();
+    }
+
+    private int firstDenied(List<String> keys, Long requestTime) {
+        if (requestTime != null || denials.isEmpty()) {
+            return -1;
+        }
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < keys.size(); i++) {
+            if (denied(keys.get(i), now) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<Rate> complete(List<Policy> policies, List<String> keys, int denied, List<Rate> rates) {
+        if (rates.size() == denied
+            && (denied == 0 || !RateLimiter.isExceeded(policies.get(denied - 1), rates.get(denied - 1)))) {
+            final Rate rate = denied(keys.get(denied), System.currentTimeMillis());
+            rates.add(rate != null ? rate : delegate.consume(policies.get(denied), keys.get(denied), null));
+        }
+        return rates;
+    }
+
+    private Rate denied(String key, long now) {
+        final Denial denial = denials.get(key);
+        if (denial == null) {
+            return null;
+        }
+        if (denial.until <= now) {
+            denials.remove(key, denial);
+            return null;
+        }
+        return new Rate(key, denial.remaining, denial.remainingQuota, denial.until - now, null);
+    }
+
+    private List<Rate> record(List<Policy> policies, List<Rate> rates) {
+        if (!rates.isEmpty()) {
+            record(policies.get(rates.size() - 1), rates.get(rates.size() - 1));
+        }
+        return rates;
+    }
+
+    private Rate record(Policy policy, Rate rate) {
+        final Long reset = rate.getReset();
+        if (reset != null && reset > 0 && RateLimiter.isExceeded(policy, rate)) {
+            final long now = System.currentTimeMillis();
+            if (denials.size() >= maxKeys) {
+                evict(now);
+            }
+            denials.put(rate.getKey(), new Denial(now + reset, rate.getRemaining(), rate.getRemainingQuota()));
+        }
+        return rate;
+    }
+
+    /**
+     * Reads a sample of the denials, so the cost of a new denial does not grow with {@code maxKeys}.
+     */
+    private void evict(long now) {
+        Map.Entry<String, Denial> first = null;
+        boolean ended = false;
+        int sampled = 0;
+        for (Map.Entry<String, Denial> entry : denials.entrySet()) {
+            if (entry.getValue().until <= now) {
+                ended |= denials.remove(entry.getKey(), entry.getValue());
+            } else if (first == null || entry.getValue().until < first.getValue().until) {
+                first = entry;
+            }
+            if (++sampled == EVICTION_SAMPLE_SIZE) {
+                break;
+            }
+        }
+        if (!ended && first != null) {
+            denials.remove(first.getKey(), first.getValue());
+        }
+    }
+
+    private static final class Denial {
+
+        private final long until;
+        private final Long remaining;
+        private final Long remainingQuota;
+
+        private Denial(long until, Long remaining, Long remainingQuota) {
+            this.until = until;
+            this.remaining = remaining;
+            this.remainingQuota = remainingQuota;
+        }
+    }
+}
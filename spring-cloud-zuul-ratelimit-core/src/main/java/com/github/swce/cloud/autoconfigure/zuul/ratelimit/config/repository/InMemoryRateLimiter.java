@@ -0,0 +1,359 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitAlgorithm;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Local in-memory rate limiter for single node deployments. <p> Counters are kept in a {@link ConcurrentHashMap} with
+ * an {@link AtomicLong} per key and window, so consuming never blocks. Expired windows are swept periodically and the
+ * number of stored keys is bounded: when the bound is reached, the cleaner thread removes expired keys first and then
+ * evicts the keys closest to their reset, which restarts their window. Keys created meanwhile may briefly exceed the
+ * bound. Sliding window policies keep the count of the previous
+ * window next to the current one, so their keys cost the same, and GCRA policies only keep their theoretical arrival
+ * time.
+ */
+@Slf4j
+public class InMemoryRateLimiter extends AbstractCacheRateLimiter implements DisposableBean {
+
+    private static final double EVICTION_RATIO = 0.1;
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private final int maxKeys;
+    private final ScheduledExecutorService cleaner;
+
+    public InMemoryRateLimiter(final int maxKeys, final long cleanupInterval) {
+        this.maxKeys = maxKeys;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ratelimit-in-memory-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cleaner.scheduleWithFixedDelay(this::removeExpired, cleanupInterval, cleanupInterval, SECONDS);
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        if (policy.getAlgorithm() == RateLimitAlgorithm.FIXED_WINDOW) {
+            return super.consume(policy, key, requestTime);
+        }
+        final Long quota = policy.getQuota() != null ? SECONDS.toMillis(policy.getQuota()) : null;
+        final long window = SECONDS.toMillis(policy.getRefreshInterval());
+        final Rate rate = new Rate(key, policy.getLimit(), quota, null, null);
+        if (policy.getLimit() != null) {
+            long usage = requestTime == null ? 1L : 0L;
+            rate.setRemaining(calcRemaining(policy, policy.getLimit(), window, usage, key, rate, true));
+        }
+        if (quota != null) {
+            long usage = requestTime != null ? requestTime : 0L;
+            String quotaKey = key + RateLimiter.QUOTA_SUFFIX;
+            rate.setRemainingQuota(calcRemaining(policy, quota, window, usage, quotaKey, rate, false));
+        }
+        return rate;
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        if (policy.getAlgorithm() == RateLimitAlgorithm.FIXED_WINDOW || policy.getLimit() == null) {
+            return super.acquire(policy, key, permits);
+        }
+        final long window = SECONDS.toMillis(policy.getRefreshInterval());
+        final Rate rate = new Rate(key, policy.getLimit(), null, null, null);
+        rate.setRemaining(calcRemaining(policy, policy.getLimit(), window, permits, key, rate, true));
+        return rate;
+    }
+
+    private Long calcRemaining(Policy policy, long limit, long window, long usage, String key, Rate rate,
+                               boolean admitOnly) {
+        if (policy.getAlgorithm() == RateLimitAlgorithm.GCRA) {
+            return calcGcraRemaining(limit, window, usage, key, rate, admitOnly);
+        }
+        return calcSlidingRemaining(limit, window, usage, key, rate, admitOnly);
+    }
+
+    @Override
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
+                                      final Long requestTime, final String key, final Rate rate) {
+        calcRemainingLimit(limit, refreshInterval, requestTime == null ? 1L : 0L, key, rate);
+    }
+
+    @Override
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
+                                      final long usage, final String key, final Rate rate) {
+        if (Objects.nonNull(limit)) {
+            Long remaining = calcRemaining(limit, refreshInterval, usage, key, rate);
+            rate.setRemaining(remaining);
+        }
+    }
+
+    @Override
+    protected void calcRemainingQuota(final Long quota, final Long refreshInterval,
+                                      final Long requestTime, final String key, final Rate rate) {
+        if (Objects.nonNull(quota)) {
+            String quotaKey = key + RateLimiter.QUOTA_SUFFIX;
+            long usage = requestTime != null ? requestTime : 0L;
+            Long remaining = calcRemaining(quota, refreshInterval, usage, quotaKey, rate);
+            rate.setRemainingQuota(remaining);
+        }
+    }
+
+    private Long calcRemaining(Long limit, Long refreshInterval, long usage, String key, Rate rate) {
+        long now = System.currentTimeMillis();
+        Counter counter = counter(key, SECONDS.toMillis(refreshInterval), now);
+        long current = counter.value.addAndGet(usage);
+        rate.setReset(Math.max(0L, counter.expiration - now));
+        return Math.max(-1, limit - current);
+    }
+
+    /**
+     * @param admitOnly Whether the usage is only counted when the estimate stays within the limit
+     */
+    private Long calcSlidingRemaining(long limit, long window, long usage, String key, Rate rate, boolean admitOnly) {
+        long now = System.currentTimeMillis();
+        SlidingCounter counter = slidingCounter(key, window, now);
+        long elapsed = now - counter.start;
+        long estimate;
+        while (true) {
+            long current = counter.value.get();
+            estimate = SlidingWindow.estimate(counter.previous, current, elapsed, window) + usage;
+            if ((admitOnly && estimate > limit) || counter.value.compareAndSet(current, current + usage)) {
+                break;
+            }
+        }
+        rate.setReset(Math.max(0L, counter.expiration - now));
+        return Math.max(-1, limit - estimate);
+    }
+
+    /**
+     * Spaces the usage by the window divided by the limit, in microseconds, and admits it while the theoretical arrival
+     * time stays within a window from now.
+     *
+     * @param admitOnly Whether the usage is only counted when it is admitted
+     */
+    private Long calcGcraRemaining(long limit, long window, long usage, String key, Rate rate, boolean admitOnly) {
+        long now = MILLISECONDS.toMicros(System.currentTimeMillis());
+        long length = MILLISECONDS.toMicros(window);
+        long increment = usage * Math.max(1L, length / limit);
+        GcraCounter counter = gcraCounter(key, now);
+        long arrival;
+        long needed;
+        while (true) {
+            long stored = counter.value.get();
+            arrival = Math.max(stored, now);
+            needed = arrival + increment;
+            if (admitOnly && needed - now > length) {
+                break;
+            }
+            if (stored == needed || counter.value.compareAndSet(stored, needed)) {
+                arrival = needed;
+                break;
+            }
+        }
+        rate.setReset(MICROSECONDS.toMillis(arrival - now + 999));
+        long current = ((needed - now) * limit + length - 1) / length;
+        return Math.max(-1, limit - current);
+    }
+
+    private Counter counter(String key, long window, long now) {
+        while (true) {
+            Counter counter = counters.get(key);
+            if (counter != null && counter.getClass() == Counter.class && !counter.isExpired(now)) {
+                return counter;
+            }
+            Counter created = new Counter(now + window);
+            if (install(key, counter, created, now)) {
+                return created;
+            }
+        }
+    }
+
+    private SlidingCounter slidingCounter(String key, long window, long now) {
+        while (true) {
+            Counter counter = counters.get(key);
+            SlidingCounter sliding = counter instanceof SlidingCounter ? (SlidingCounter) counter : null;
+            if (sliding != null && !sliding.isExpired(now)) {
+                return sliding;
+            }
+            SlidingCounter created = sliding != null && now < sliding.expiration + window
+                ? new SlidingCounter(sliding.expiration, window, sliding.value.get())
+                : new SlidingCounter(now, window, 0L);
+            if (install(key, counter, created, now)) {
+                return created;
+            }
+        }
+    }
+
+    private GcraCounter gcraCounter(String key, long now) {
+        while (true) {
+            Counter counter = counters.get(key);
+            if (counter instanceof GcraCounter) {
+                return (GcraCounter) counter;
+            }
+            GcraCounter created = new GcraCounter(now);
+            if (install(key, counter, created, MICROSECONDS.toMillis(now))) {
+                return created;
+            }
+        }
+    }
+
+    private boolean install(String key, Counter existing, Counter created, long now) {
+        if (existing == null) {
+            if (counters.size() >= maxKeys) {
+                scheduleEviction();
+            }
+            return counters.putIfAbsent(key, created) == null;
+        }
+        return counters.replace(key, existing, created);
+    }
+
+    private void scheduleEviction() {
+        if (evictionScheduled.compareAndSet(false, true)) {
+            try {
+                cleaner.execute(this::evict);
+            } catch (RejectedExecutionException e) {
+                evictionScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Runs on the cleaner thread, so sorting the keys does not hold a request.
+     */
+    void evict() {
+        evictionScheduled.set(false);
+        try {
+            final long now = System.currentTimeMillis();
+            removeExpired(now);
+            int excess = counters.size() - maxKeys + (int) Math.ceil(maxKeys * EVICTION_RATIO);
+            if (excess > 0 && counters.size() >= maxKeys) {
+                counters.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().retention()))
+                    .limit(excess)
+                    .forEach(entry -> counters.remove(entry.getKey(), entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed evicting rate limit keys", e);
+        }
+    }
+
+    void removeExpired() {
+        try {
+            removeExpired(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.error("Failed removing expired rate limit keys", e);
+        }
+    }
+
+    private void removeExpired(long now) {
+        counters.forEach((key, counter) -> {
+            if (counter.isRetired(now)) {
+                counters.remove(key, counter);
+            }
+        });
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    @Override
+    public void destroy() {
+        cleaner.shutdownNow();
+    }
+
+    private static class Counter {
+
+        final AtomicLong value = new AtomicLong();
+        final long expiration;
+
+        Counter(long expiration) {
+            this.expiration = expiration;
+        }
+
+        boolean isExpired(long now) {
+            return expiration <= now;
+        }
+
+        long retention() {
+            return expiration;
+        }
+
+        boolean isRetired(long now) {
+            return retention() <= now;
+        }
+    }
+
+    /**
+     * Counter of a sliding window, kept for one more window after it expires as the previous count of its successor.
+     */
+    private static final class SlidingCounter extends Counter {
+
+        private final long start;
+        private final long previous;
+
+        private SlidingCounter(long start, long window, long previous) {
+            super(start + window);
+            this.start = start;
+            this.previous = previous;
+        }
+
+        @Override
+        long retention() {
+            return 2 * expiration - start;
+        }
+    }
+
+    /**
+     * Theoretical arrival time of a GCRA key in microseconds, kept until it falls behind the current time.
+     */
+    private static final class GcraCounter extends Counter {
+
+        private GcraCounter(long arrival) {
+            super(0L);
+            value.set(arrival);
+        }
+
+        @Override
+        boolean isExpired(long now) {
+            return false;
+        }
+
+        @Override
+        long retention() {
+            return MICROSECONDS.toMillis(value.get());
+        }
+    }
+}
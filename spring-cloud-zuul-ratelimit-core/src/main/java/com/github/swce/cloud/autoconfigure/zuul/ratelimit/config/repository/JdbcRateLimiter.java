@@ -0,0 +1,320 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Rate limiter keeping its counters in a relational database through JDBC, for deployments needing durable
+ * accounting. <p> Counters are fixed windows aligned on the epoch, whatever the algorithm of the policy, answered from
+ * memory: the stored counter of a key is only read the first time the key is used in a window, so the usage of the
+ * other nodes is accounted for as of that moment. Increments are written behind every {@code flushInterval}
+ * milliseconds with batched updates, adding them to the stored counter or restarting it when its window ended, and the
+ * missing rows are inserted. Increments not flushed yet are lost if the node stops abruptly. <p> The table is expected
+ * to have a {@code counter_key} primary key and {@code window_start} and {@code used} numeric columns, see
+ * {@code META-INF/scripts/ratelimit-jdbc-schema.sql}. Its key column is bounded, so keys that may exceed it should be
+ * hashed by a
+ * {@link com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.HashingRateLimitKeyEncoder}.
+ */
+@Slf4j
+public class JdbcRateLimiter extends AbstractCacheRateLimiter implements DisposableBean {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Queue<Delta> retired = new ConcurrentLinkedQueue<>();
+    private final RateLimiterErrorHandler rateLimiterErrorHandler;
+    private final JdbcTemplate jdbcTemplate;
+    private final String selectSql;
+    private final String updateSql;
+    private final String insertSql;
+    private final ScheduledExecutorService flusher;
+
+    public JdbcRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler, final JdbcTemplate jdbcTemplate,
+                           final String tableName, final long flushInterval) {
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+        this.jdbcTemplate = jdbcTemplate;
+        this.selectSql = "SELECT used FROM " + tableName + " WHERE counter_key = ? AND window_start = ?";
+        this.updateSql = "UPDATE " + tableName + " SET used = CASE WHEN window_start = ? THEN used + ? ELSE ? END,"
+            + " window_start = ? WHERE counter_key = ? AND window_start <= ?";
+        this.insertSql = "INSERT INTO " + tableName + " (counter_key, window_start, used) VALUES (?, ?, ?)";
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ratelimit-jdbc-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushSafely, flushInterval, flushInterval, MILLISECONDS);
+    }
+
+    @Override
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
+                                      final Long requestTime, final String key, final Rate rate) {
+        calcRemainingLimit(limit, refreshInterval, requestTime == null ? 1L : 0L, key, rate);
+    }
+
+    @Override
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
+                                      final long usage, final String key, final Rate rate) {
+        if (Objects.nonNull(limit)) {
+            Long remaining = calcRemaining(limit, refreshInterval, usage, key, rate);
+            rate.setRemaining(remaining);
+        }
+    }
+
+    @Override
+    protected void calcRemainingQuota(final Long quota, final Long refreshInterval,
+                                      final Long requestTime, final String key, final Rate rate) {
+        if (Objects.nonNull(quota)) {
+            String quotaKey = key + RateLimiter.QUOTA_SUFFIX;
+            long usage = requestTime != null ? requestTime : 0L;
+            Long remaining = calcRemaining(quota, refreshInterval, usage, quotaKey, rate);
+            rate.setRemainingQuota(remaining);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.shutdownNow();
+        flushSafely();
+    }
+
+    private Long calcRemaining(long limit, long refreshInterval, long usage, String key, Rate rate) {
+        final long window = SECONDS.toMillis(refreshInterval);
+        final long now = System.currentTimeMillis();
+        final long start = now - now % window;
+        rate.setReset(start + window - now);
+        while (true) {
+            final Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+            final Long current = counter.add(key, start, window, usage);
+            if (current != null) {
+                return Math.max(-1, limit - current);
+            }
+            counters.remove(key, counter);
+        }
+    }
+
+    private long load(String key, long start) {
+        try {
+            List<Long> used = jdbcTemplate.queryForList(selectSql, Long.class, key, start);
+            return used.isEmpty() || used.get(0) == null ? 0L : used.get(0);
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleFetchError(key, e);
+            return 0L;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed flushing rate limit counters", e);
+        }
+    }
+
+    /**
+     * Writes the pending increments, and forgets the counters of the windows that ended.
+     */
+    void flush() {
+        final long now = System.currentTimeMillis();
+        final List<Delta> deltas = new ArrayList<>();
+        for (Delta delta = retired.poll(); delta != null; delta = retired.poll()) {
+            deltas.add(delta);
+        }
+        counters.forEach((key, counter) -> {
+            Delta delta = counter.drain(key, now);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+            if (counter.isRetired()) {
+                counters.remove(key, counter);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        final int[][] updated;
+        try {
+            updated = jdbcTemplate.batchUpdate(updateSql, deltas, BATCH_SIZE, (statement, delta) -> {
+                statement.setLong(1, delta.start);
+                statement.setLong(2, delta.usage);
+                statement.setLong(3, delta.usage);
+                statement.setLong(4, delta.start);
+                statement.setString(5, delta.key);
+                statement.setLong(6, delta.start);
+            });
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleError("Failed flushing " + deltas.size() + " rate limit counters", e);
+            deltas.forEach(this::restore);
+            return;
+        }
+        final List<Delta> missing = new ArrayList<>();
+        for (int i = 0; i < deltas.size(); i++) {
+            if (updated[i / BATCH_SIZE][i % BATCH_SIZE] == 0) {
+                missing.add(deltas.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            insert(missing);
+        }
+    }
+
+    private void insert(List<Delta> deltas) {
+        try {
+            jdbcTemplate.batchUpdate(insertSql, deltas, BATCH_SIZE, (statement, delta) -> {
+                statement.setString(1, delta.key);
+                statement.setLong(2, delta.start);
+                statement.setLong(3, delta.usage);
+            });
+        } catch (DataIntegrityViolationException e) {
+            deltas.forEach(this::upsert);
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleError("Failed inserting " + deltas.size() + " rate limit counters", e);
+            deltas.forEach(this::restore);
+        }
+    }
+
+    /**
+     * Inserts a counter created by another node meanwhile one by one, as the batch failed on a duplicate key.
+     */
+    private void upsert(Delta delta) {
+        try {
+            if (update(delta) == 0) {
+                jdbcTemplate.update(insertSql, delta.key, delta.start, delta.usage);
+            }
+        } catch (DataIntegrityViolationException e) {
+            try {
+                update(delta);
+            } catch (DataAccessException retryException) {
+                rateLimiterErrorHandler.handleSaveError(delta.key, retryException);
+            }
+        } catch (DataAccessException e) {
+            rateLimiterErrorHandler.handleSaveError(delta.key, e);
+        }
+    }
+
+    private int update(Delta delta) {
+        return jdbcTemplate.update(updateSql, delta.start, delta.usage, delta.usage, delta.start, delta.key,
+            delta.start);
+    }
+
+    /**
+     * Gives a delta that failed to be written back to its counter, or drops it once its window ended.
+     */
+    private void restore(Delta delta) {
+        Counter counter = counters.get(delta.key);
+        if (counter == null || !counter.restore(delta)) {
+            rateLimiterErrorHandler.handleSaveError(delta.key, new IllegalStateException(
+                "Dropped " + delta.usage + " of window " + delta.start + " after failing to write it"));
+        }
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    private final class Counter {
+
+        private long start = -1;
+        private long end;
+        private long stored;
+        private long pending;
+        private boolean loaded;
+        private boolean retired;
+
+        /**
+         * @return the usage of the window after adding the given one, or {@code null} if the counter was retired
+         */
+        private synchronized Long add(String key, long start, long window, long usage) {
+            if (retired) {
+                return null;
+            }
+            if (start != this.start) {
+                if (pending > 0) {
+                    JdbcRateLimiter.this.retired.add(new Delta(key, this.start, pending));
+                }
+                this.start = start;
+                this.end = start + window;
+                stored = 0;
+                pending = 0;
+                loaded = false;
+            }
+            if (!loaded) {
+                loaded = true;
+                stored = load(key, start);
+            }
+            pending += usage;
+            return stored + pending;
+        }
+
+        private synchronized Delta drain(String key, long now) {
+            if (pending == 0) {
+                retired = now >= end;
+                return null;
+            }
+            Delta delta = new Delta(key, start, pending);
+            stored += pending;
+            pending = 0;
+            retired = now >= end;
+            return delta;
+        }
+
+        private synchronized boolean restore(Delta delta) {
+            if (retired || delta.start != start) {
+                return false;
+            }
+            stored -= delta.usage;
+            pending += delta.usage;
+            return true;
+        }
+
+        private synchronized boolean isRetired() {
+            return retired;
+        }
+    }
+
+    private static final class Delta {
+
+        private final String key;
+        private final long start;
+        private final long usage;
+
+        private Delta(String key, long start, long usage) {
+            this.key = key;
+            this.start = start;
+            this.usage = usage;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyEncoder;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Hands the keys over to a {@link RateLimiter} encoded by a {@link RateLimitKeyEncoder}, so the repository stores the
+ * encoded keys. The returned rates carry the keys as they were given.
+ */
+public class KeyEncodingRateLimiter implements RateLimiter {
+
+    private final RateLimiter delegate;
+    private final RateLimitKeyEncoder keyEncoder;
+
+    public KeyEncodingRateLimiter(final RateLimiter delegate, final RateLimitKeyEncoder keyEncoder) {
+        this.delegate = delegate;
+        this.keyEncoder = keyEncoder;
+    }
+
+    public RateLimiter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        return withKey(delegate.consume(policy, keyEncoder.encode(key), requestTime), key);
+    }
+
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        return withKeys(delegate.consumeAll(policies, encode(keys), requestTime), keys);
+    }
+
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        return delegate.consumeAllAsync(policies, encode(keys), requestTime).thenApply(rates -> withKeys(rates, keys));
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return delegate.supportsAcquire();
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        return withKey(delegate.acquire(policy, keyEncoder.encode(key), permits), key);
+    }
+
+    private List<String> encode(List<String> keys) {
+        final List<String> encoded = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            encoded.add(keyEncoder.encode(key));
+        }
+        return encoded;
+    }
+
+    private static List<Rate> withKeys(List<Rate> rates, List<String> keys) {
+        final List<Rate> result = new ArrayList<>(rates.size());
+        for (int i = 0; i < rates.size(); i++) {
+            result.add(withKey(rates.get(i), keys.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the rate rather than setting its key, as a repository may keep the instances it returns.
+     */
+    private static Rate withKey(Rate rate, String key) {
+        return new Rate(key, rate.getRemaining(), rate.getRemainingQuota(), rate.getReset(), rate.getExpiration());
+    }
+}
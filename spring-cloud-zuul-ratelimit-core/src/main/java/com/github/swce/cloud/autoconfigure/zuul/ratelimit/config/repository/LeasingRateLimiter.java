@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Near cache in front of a shared {@link RateLimiter}. <p> Instead of calling the shared backend for every request,
+ * blocks of the policy limit are leased with {@link RateLimiter#acquire(Policy, String, long)} and served from a local
+ * counter until the block runs out or the window resets. The lease size adapts to the rate observed for each key, so
+ * that a lease lasts about {@code leaseInterval} milliseconds, and never exceeds {@code leaseRatio} of the limit. <p>
+ * Leased requests are counted by the backend before they are served, so the cluster never admits more than the limit
+ * while a window lasts. When the backend reports a reset later than the actual end of the window, a node may serve the
+ * rest of its lease in the next window, admitting at most one lease per node and key more than the limit. Requests
+ * left in a lease when the window ends are lost, admitting at most one lease per node and key less than the limit.
+ * Backends without windows, like refilling token buckets, report no reset and their leases last {@code leaseInterval}.
+ * <p> A single renewal per key is sent to the backend at a time, without holding a lock. Requests arriving meanwhile
+ * wait for it and are rejected with it when it is rejected.
+ * <p> Policies with a quota, keys beyond {@code maxKeys}, and every policy when the backend does not
+ * {@linkplain RateLimiter#supportsAcquire() support acquiring permits}, are passed to the backend as they are.
+ */
+@Slf4j
+public class LeasingRateLimiter implements RateLimiter {
+
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private final RateLimiter delegate;
+    private final double leaseRatio;
+    private final long leaseInterval;
+    private final int maxKeys;
+    private final boolean supported;
+
+    public LeasingRateLimiter(final RateLimiter delegate, final double leaseRatio, final long leaseInterval,
+                              final int maxKeys) {
+        this.delegate = delegate;
+        this.leaseRatio = leaseRatio;
+        this.leaseInterval = leaseInterval;
+        this.maxKeys = maxKeys;
+        this.supported = delegate.supportsAcquire();
+        if (!supported) {
+            log.warn("Leasing disabled, {} does not support acquiring permits", delegate.getClass().getName());
+        }
+    }
+
+    public RateLimiter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        if (requestTime != null || !isLeasable(policy)) {
+            return delegate.consume(policy, key, requestTime);
+        }
+        Lease lease = lease(key);
+        if (lease == null) {
+            return delegate.consume(policy, key, null);
+        }
+        return lease.consume(policy, key);
+    }
+
+    /**
+     * Hands the batch over to the delegate when none of the policies is served from a lease, otherwise consumes the
+     * policies one by one.
+     */
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        if (requestTime != null || policies.stream().noneMatch(this::isLeasable)) {
+            return delegate.consumeAll(policies, keys, requestTime);
+        }
+        return RateLimiter.super.consumeAll(policies, keys, null);
+    }
+
+    /**
+     * Hands the batch over to the delegate when none of the policies is served from a lease, otherwise consumes the
+     * policies one by one before returning.
+     */
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        if (requestTime != null || policies.stream().noneMatch(this::isLeasable)) {
+            return delegate.consumeAllAsync(policies, keys, requestTime);
+        }
+        return RateLimiter.super.consumeAllAsync(policies, keys, null);
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return delegate.supportsAcquire();
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        return delegate.acquire(policy, key, permits);
+    }
+
+    private boolean isLeasable(Policy policy) {
+        return supported && policy.getLimit() != null && policy.getQuota() == null
+            && maxLease(policy.getLimit()) > 1;
+    }
+
+    private long maxLease(long limit) {
+        return (long) (limit * leaseRatio);
+    }
+
+    private Lease lease(String key) {
+        Lease lease = leases.get(key);
+        if (lease != null) {
+            return lease;
+        }
+        if (leases.size() >= maxKeys) {
+            long now = System.currentTimeMillis();
+            leases.forEach((leaseKey, candidate) -> {
+                if (candidate.isExpired(now)) {
+                    leases.remove(leaseKey, candidate);
+                }
+            });
+            if (leases.size() >= maxKeys) {
+                return null;
+            }
+        }
+        return leases.computeIfAbsent(key, k -> new Lease());
+    }
+
+    int size() {
+        return leases.size();
+    }
+
+    private final class Lease {
+
+        private final AtomicLong tokens = new AtomicLong();
+        private final AtomicReference<CompletableFuture<Rate>> renewal = new AtomicReference<>();
+        private volatile long expiration;
+        private volatile long remaining;
+        // only read and written by the thread holding the renewal
+        private long size = 1;
+        private long start;
+
+        private boolean isExpired(long now) {
+            return now >= expiration;
+        }
+
+        private Rate consume(Policy policy, String key) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (!isExpired(now) && take()) {
+                    return rate(key, now);
+                }
+                CompletableFuture<Rate> pending = renewal.get();
+                if (pending == null) {
+                    CompletableFuture<Rate> created = new CompletableFuture<>();
+                    if (renewal.compareAndSet(null, created)) {
+                        return renew(policy, key, created);
+                    }
+                    continue;
+                }
+                Rate rate = pending.exceptionally(e -> null).join();
+                if (rate != null && rate.getRemaining() < 0) {
+                    return new Rate(key, rate.getRemaining(), null, rate.getReset(), null);
+                }
+            }
+        }
+
+        /**
+         * Renews the lease unless another renewal completed since the tokens ran out, then releases the renewal before
+         * completing it, so that the requests waiting for it either take from the new lease or start the next one.
+         */
+        private Rate renew(Policy policy, String key, CompletableFuture<Rate> created) {
+            final Rate rate;
+            try {
+                long now = System.currentTimeMillis();
+                rate = !isExpired(now) && take() ? rate(key, now) : renew(policy, key, now);
+            } catch (RuntimeException e) {
+                renewal.set(null);
+                created.completeExceptionally(e);
+                throw e;
+            }
+            renewal.set(null);
+            created.complete(rate);
+            return rate;
+        }
+
+        private boolean take() {
+            long current;
+            do {
+                current = tokens.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        private Rate rate(String key, long now) {
+            return new Rate(key, remaining + tokens.get(), null, expiration - now, null);
+        }
+
+        private Rate renew(Policy policy, String key, long now) {
+            long permits = nextSize(policy.getLimit(), now);
+            final Rate rate = delegate.acquire(policy, key, permits);
+            if (rate.getRemaining() < 0) {
+                size = 1;
+                tokens.set(0);
+                return permits > 1 ? delegate.consume(policy, key, null) : rate;
+            }
+            start = now;
+            remaining = rate.getRemaining();
+            Long reset = rate.getReset();
+            expiration = now + (reset != null && reset > 0 ? reset : leaseInterval);
+            tokens.set(permits - 1);
+            return rate(key, now);
+        }
+
+        /**
+         * Sizes the next lease from the rate the previous one was consumed at, capped by the limit ratio and by the
+         * requests the backend reported as remaining in the current window.
+         */
+        private long nextSize(long limit, long now) {
+            long used = size - tokens.get();
+            long elapsed = now - start;
+            if (start > 0 && used > 0) {
+                size = elapsed > 0 ? used * leaseInterval / elapsed : Long.MAX_VALUE;
+            }
+            size = Math.max(1, Math.min(size, maxLease(limit)));
+            if (!isExpired(now)) {
+                size = Math.max(1, Math.min(size, remaining));
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisScriptRateLimiter.CONSUME_SCRIPT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.ScriptOutputType;
+import com.lambdaworks.redis.api.async.RedisScriptingAsyncCommands;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * Redis rate limiter running the consume script of {@link RedisScriptRateLimiter} with the asynchronous commands of
+ * a Lettuce connection. <p> {@link #consumeAllAsync(List, List, Long)} returns as soon as the script call is written,
+ * and its stage is completed on the Lettuce event loop when Redis answers, so paired with the asynchronous rate limit
+ * filter no container thread waits on Redis. The other methods wait for the answer up to the timeout of the
+ * connection factory, since asynchronous commands never time out and are buffered while the connection is
+ * reestablished, and answer with the policy limits past it. <p> The script is called through
+ * {@code EVALSHA}, falling back to {@code EVAL} when Redis does not know it yet. The native connection is taken from
+ * the connection factory on first use, and shared by all the requests when the factory shares its native connection,
+ * as it does by default. <p> In cluster mode the counters are wrapped in hash tags, and the policies of a request are
+ * consumed with one script call per run of consecutive policies sharing a slot. Lettuce routes each call to the node
+ * serving its slot, and the next call is only sent once the previous one answered without an exceeded policy.
+ */
+@SuppressWarnings("unchecked")
+public class LettuceRateLimiter implements RateLimiter, InitializingBean, DisposableBean {
+
+    private static final String SCRIPT = CONSUME_SCRIPT.getScriptAsString();
+    private static final String NO_SCRIPT = "NOSCRIPT";
+
+    private final RateLimiterErrorHandler rateLimiterErrorHandler;
+    private final LettuceConnectionFactory connectionFactory;
+    private final boolean clusterEnabled;
+    private RedisConnection connection;
+    private volatile RedisScriptingAsyncCommands<byte[], byte[]> commands;
+
+    public LettuceRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                              final LettuceConnectionFactory connectionFactory) {
+        this(rateLimiterErrorHandler, connectionFactory, false);
+    }
+
+    public LettuceRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                              final LettuceConnectionFactory connectionFactory, final boolean clusterEnabled) {
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+        this.connectionFactory = connectionFactory;
+        this.clusterEnabled = clusterEnabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            commands().scriptLoad(SCRIPT.getBytes(UTF_8)).whenComplete((sha, e) -> {
+                if (e != null) {
+                    rateLimiterErrorHandler.handleError("Failed preloading rate limit script, will load it on first use",
+                        unwrap(e));
+                }
+            });
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleError("Failed preloading rate limit script, will load it on first use", e);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        return await(singletonList(policy), singletonList(key), requestTime == null ? 1L : 0L, requestTime, true)
+            .get(0);
+    }
+
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        return await(policies, keys, requestTime == null ? 1L : 0L, requestTime, true);
+    }
+
+    /**
+     * Consumes the counters of all the policies with a single script call, without waiting for Redis to answer.
+     */
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        return consume(policies, keys, requestTime == null ? 1L : 0L, requestTime, true);
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return true;
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        return await(singletonList(policy), singletonList(key), permits, null, false).get(0);
+    }
+
+    private List<Rate> await(final List<Policy> policies, final List<String> keys, final long usage,
+                             final Long requestTime, final boolean withQuota) {
+        final CompletableFuture<List<Rate>> rates = consume(policies, keys, usage, requestTime, withQuota)
+            .toCompletableFuture();
+        try {
+            return rates.get(connectionFactory.getTimeout(), MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fail(policies, keys, usage, requestTime, withQuota, e);
+        } catch (ExecutionException | TimeoutException e) {
+            return fail(policies, keys, usage, requestTime, withQuota, e);
+        }
+    }
+
+    private List<Rate> fail(final List<Policy> policies, final List<String> keys, final long usage,
+                            final Long requestTime, final boolean withQuota, final Exception e) {
+        final ConsumeScriptCall call = new ConsumeScriptCall(policies, keys, usage, requestTime, withQuota, false);
+        rateLimiterErrorHandler.handleError(call.getErrorMessage(), e);
+        return call.getRates(null);
+    }
+
+    private CompletionStage<List<Rate>> consume(final List<Policy> policies, final List<String> keys,
+                                                final long usage, final Long requestTime, final boolean withQuota) {
+        if (!clusterEnabled) {
+            return consume(new ConsumeScriptCall(policies, keys, usage, requestTime, withQuota, false));
+        }
+        final List<ConsumeScriptCall> calls = ConsumeScriptCall.bySlot(policies, keys, usage, requestTime, withQuota);
+        return consume(calls, 0, new ArrayList<>(policies.size()));
+    }
+
+    private CompletionStage<List<Rate>> consume(final List<ConsumeScriptCall> calls, final int index,
+                                                final List<Rate> rates) {
+        final ConsumeScriptCall call = calls.get(index);
+        return consume(call).thenCompose(callRates -> {
+            rates.addAll(callRates);
+            if (index + 1 == calls.size() || call.isExceeded(callRates)) {
+                return CompletableFuture.completedFuture(rates);
+            }
+            return consume(calls, index + 1, rates);
+        });
+    }
+
+    private CompletionStage<List<Rate>> consume(final ConsumeScriptCall call) {
+        if (call.getCounters().isEmpty()) {
+            return CompletableFuture.completedFuture(call.getRates(null));
+        }
+        try {
+            return execute(encode(call.getCounters()), encode(call.getArgs())).handle((results, e) -> {
+                if (e != null) {
+                    rateLimiterErrorHandler.handleError(call.getErrorMessage(), unwrap(e));
+                }
+                return call.getRates(results);
+            });
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleError(call.getErrorMessage(), e);
+            return CompletableFuture.completedFuture(call.getRates(null));
+        }
+    }
+
+    private CompletionStage<List<Long>> execute(final byte[][] counters, final byte[][] args) {
+        final RedisScriptingAsyncCommands<byte[], byte[]> commands = commands();
+        final CompletableFuture<List<Long>> results = new CompletableFuture<>();
+        commands.<List<Long>>evalsha(CONSUME_SCRIPT.getSha1(), ScriptOutputType.MULTI, counters, args)
+            .whenComplete((values, e) -> {
+                if (e != null && isNoScript(unwrap(e))) {
+                    commands.<List<Long>>eval(SCRIPT, ScriptOutputType.MULTI, counters, args)
+                        .whenComplete((evaluated, evalError) -> complete(results, evaluated, evalError));
+                } else {
+                    complete(results, values, e);
+                }
+            });
+        return results;
+    }
+
+    private RedisScriptingAsyncCommands<byte[], byte[]> commands() {
+        RedisScriptingAsyncCommands<byte[], byte[]> current = commands;
+        if (current == null) {
+            synchronized (this) {
+                if (commands == null) {
+                    connection = connectionFactory.getConnection();
+                    commands = (RedisScriptingAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+                }
+                current = commands;
+            }
+        }
+        return current;
+    }
+
+    private static byte[][] encode(List<String> values) {
+        final byte[][] encoded = new byte[values.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = values.get(i).getBytes(UTF_8);
+        }
+        return encoded;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, T value, Throwable error) {
+        if (error != null) {
+            future.completeExceptionally(unwrap(error));
+        } else {
+            future.complete(value);
+        }
+    }
+
+    private static boolean isNoScript(Throwable error) {
+        return error instanceof RedisCommandExecutionException && error.getMessage() != null
+            && error.getMessage().startsWith(NO_SCRIPT);
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+    }
+}
@@ -16,33 +16,73 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitAlgorithm;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import java.util.Objects;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 
 /**
+ * Redis rate limiter that consumes the counters of a policy with separate commands. Sliding window and GCRA policies
+ * need their counters read and written atomically, and are consumed through a {@link RedisScriptRateLimiter}. In
+ * cluster mode the counters are wrapped in hash tags, so the layout of the keys does not depend on the algorithm.
+ *
  * @author Marcos Barbero
  * @author Liel Chayoun
  */
 @Slf4j
-@RequiredArgsConstructor
 @SuppressWarnings("unchecked")
 public class RedisRateLimiter extends AbstractCacheRateLimiter {
 
     private final RateLimiterErrorHandler rateLimiterErrorHandler;
     private final RedisTemplate redisTemplate;
+    private final RedisScriptRateLimiter scriptRateLimiter;
+    private final boolean clusterEnabled;
+
+    public RedisRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler, final RedisTemplate redisTemplate) {
+        this(rateLimiterErrorHandler, redisTemplate, false);
+    }
+
+    public RedisRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler, final RedisTemplate redisTemplate,
+                            final boolean clusterEnabled) {
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+        this.redisTemplate = redisTemplate;
+        this.scriptRateLimiter = new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate, clusterEnabled);
+        this.clusterEnabled = clusterEnabled;
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        if (policy.getAlgorithm() != RateLimitAlgorithm.FIXED_WINDOW) {
+            return scriptRateLimiter.consume(policy, key, requestTime);
+        }
+        return super.consume(policy, key, requestTime);
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        if (policy.getAlgorithm() != RateLimitAlgorithm.FIXED_WINDOW) {
+            return scriptRateLimiter.acquire(policy, key, permits);
+        }
+        return super.acquire(policy, key, permits);
+    }
 
     @Override
     protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
                                       final Long requestTime, final String key, final Rate rate) {
+        calcRemainingLimit(limit, refreshInterval, requestTime == null ? 1L : 0L, key, rate);
+    }
+
+    @Override
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
+                                      final long usage, final String key, final Rate rate) {
         if (Objects.nonNull(limit)) {
-            long usage = requestTime == null ? 1L : 0L;
-            Long remaining = calcRemaining(limit, refreshInterval, usage, key, rate);
+            Long remaining = calcRemaining(limit, refreshInterval, usage, counter(key), rate);
             rate.setRemaining(remaining);
         }
     }
@@ -51,13 +91,17 @@ public class RedisRateLimiter extends AbstractCacheRateLimiter {
     protected void calcRemainingQuota(final Long quota, final Long refreshInterval,
                                       final Long requestTime, final String key, final Rate rate) {
         if (Objects.nonNull(quota)) {
-            String quotaKey = key + RateLimiter.QUOTA_SUFFIX;
+            String quotaKey = counter(key) + RateLimiter.QUOTA_SUFFIX;
             long usage = requestTime != null ? requestTime : 0L;
             Long remaining = calcRemaining(quota, refreshInterval, usage, quotaKey, rate);
             rate.setRemainingQuota(remaining);
         }
     }
 
+    private String counter(String key) {
+        return clusterEnabled ? ConsumeScriptCall.hashTag(key) : key;
+    }
+
     private Long calcRemaining(Long limit, Long refreshInterval, long usage,
                                String key, Rate rate) {
         rate.setReset(SECONDS.toMillis(refreshInterval));
@@ -72,9 +116,28 @@ public class RedisRateLimiter extends AbstractCacheRateLimiter {
             String msg = "Failed retrieving rate for " + key + ", will return the current value";
             rateLimiterErrorHandler.handleError(msg, e);
         }
+        if (current != null && current > limit) {
+            handleReset(key, rate);
+        }
         return Math.max(-1, limit - current);
     }
 
+    /**
+     * Reports the time left until the counter expires instead of the whole interval, so that callers holding back an
+     * exceeded key do not hold it longer than the window.
+     */
+    private void handleReset(String key, Rate rate) {
+        try {
+            Long expire = redisTemplate.getExpire(key, MILLISECONDS);
+            if (expire != null && expire >= 0) {
+                rate.setReset(Math.min(rate.getReset(), expire));
+            }
+        } catch (RuntimeException e) {
+            String msg = "Failed retrieving expiration for " + key + ", will return the whole interval";
+            rateLimiterErrorHandler.handleError(msg, e);
+        }
+    }
+
     private void handleExpiration(String key, Long refreshInterval) {
         try {
             this.redisTemplate.expire(key, refreshInterval, SECONDS);
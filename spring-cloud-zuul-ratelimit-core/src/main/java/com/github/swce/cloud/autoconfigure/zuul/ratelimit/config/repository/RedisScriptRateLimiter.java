@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static java.util.Collections.singletonList;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+/**
+ * Redis rate limiter that consumes the limit and quota counters of a policy with a single Lua script call. <p> The
+ * script increments the counters, sets their expiration and returns the remaining time to live atomically, so a policy,
+ * or all the policies of a request, cost one round trip and a counter can never be left without an expiration. The
+ * script is preloaded on startup and invoked through {@code EVALSHA}. <p> Sliding window counters are hashes holding
+ * the window start and the counts of the previous and current windows, and GCRA counters are strings holding the
+ * theoretical arrival time. The current time is read from the Redis server, so the gateway clocks do not matter, except
+ * before Redis 3.2, which cannot replicate script effects, where the time sent by the caller is used and the gateway
+ * clocks should be kept in sync. <p> In cluster mode the key prefix and route
+ * id of the counters are wrapped in hash tags, and the policies of a request are consumed with one script call per run
+ * of consecutive policies sharing a slot, each call stopping the following ones when a policy is exceeded.
+ */
+@Slf4j
+public class RedisScriptRateLimiter implements RateLimiter, InitializingBean {
+
+    static final RedisScript<List<Long>> CONSUME_SCRIPT = script("META-INF/scripts/ratelimit-consume.lua");
+
+    private final RateLimiterErrorHandler rateLimiterErrorHandler;
+    private final RedisTemplate<String, ?> redisTemplate;
+    private final boolean clusterEnabled;
+
+    public RedisScriptRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                  final RedisTemplate redisTemplate) {
+        this(rateLimiterErrorHandler, redisTemplate, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisScriptRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                  final RedisTemplate redisTemplate, final boolean clusterEnabled) {
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+        this.redisTemplate = redisTemplate;
+        this.clusterEnabled = clusterEnabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<Long>> script(String location) {
+        DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(location)));
+        script.setResultType((Class<List<Long>>) (Class<?>) List.class);
+        return script;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            byte[] body = CONSUME_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptLoad(body));
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleError("Failed preloading rate limit script, will load it on first use", e);
+        }
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        return consume(singletonList(policy), singletonList(key), requestTime == null ? 1L : 0L, requestTime, true)
+            .get(0);
+    }
+
+    /**
+     * Consumes the counters of all the policies with a single script call, which stops after the first exceeded
+     * policy.
+     */
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        return consume(policies, keys, requestTime == null ? 1L : 0L, requestTime, true);
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return true;
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        return consume(singletonList(policy), singletonList(key), permits, null, false).get(0);
+    }
+
+    private List<Rate> consume(final List<Policy> policies, final List<String> keys, final long usage,
+                               final Long requestTime, final boolean withQuota) {
+        if (!clusterEnabled) {
+            return consume(new ConsumeScriptCall(policies, keys, usage, requestTime, withQuota, false));
+        }
+        final List<Rate> rates = new ArrayList<>(policies.size());
+        for (ConsumeScriptCall call : ConsumeScriptCall.bySlot(policies, keys, usage, requestTime, withQuota)) {
+            final List<Rate> callRates = consume(call);
+            rates.addAll(callRates);
+            if (call.isExceeded(callRates)) {
+                break;
+            }
+        }
+        return rates;
+    }
+
+    private List<Rate> consume(final ConsumeScriptCall call) {
+        if (call.getCounters().isEmpty()) {
+            return call.getRates(null);
+        }
+
+        List<Long> results = null;
+        try {
+            results = redisTemplate.execute(CONSUME_SCRIPT, call.getCounters(), call.getArgs().toArray());
+        } catch (RuntimeException e) {
+            rateLimiterErrorHandler.handleError(call.getErrorMessage(), e);
+        }
+        return call.getRates(results);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sliding window counter arithmetic shared by the local implementations.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class SlidingWindow {
+
+    /**
+     * @param previous The count of the previous window
+     * @param current  The count of the current window
+     * @param elapsed  The time elapsed since the current window started
+     * @param window   The window length
+     * @return the previous count weighted by its overlap with a window ending now, plus the current count
+     */
+    static long estimate(long previous, long current, long elapsed, long window) {
+        final long overlap = Math.max(0L, window - elapsed);
+        return previous * overlap / window + current;
+    }
+}
@@ -16,10 +16,18 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.AbstractCacheRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import io.github.bucket4j.AbstractBucketBuilder;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
@@ -27,9 +35,19 @@ import io.github.bucket4j.Bucket4j;
 import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.ConsumptionProbe;
 import io.github.bucket4j.Extension;
+import io.github.bucket4j.grid.CommandResult;
+import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.GridProxy;
 import io.github.bucket4j.grid.ProxyManager;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Supplier;
+import lombok.Value;
 
 /**
  * Bucket4j rate limiter configuration.
@@ -39,15 +57,29 @@ import java.util.function.Supplier;
  */
 abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E extends Extension<T>> extends AbstractCacheRateLimiter {
 
+    private static final int CONFIGURATION_CACHE_SIZE = 1_000;
+    private static final String COMBINED_SUFFIX = "-combined";
+
     private final Class<E> extension;
+    private final RateLimiterErrorHandler rateLimiterErrorHandler;
+    /**
+     * Configurations per capacity and period, shared by all the keys of a policy. Refreshed policies with new values
+     * get new entries, and the stale ones are evicted as the cache is bounded.
+     */
+    private final LoadingCache<BucketShape, Supplier<BucketConfiguration>> configurations = CacheBuilder.newBuilder()
+        .maximumSize(CONFIGURATION_CACHE_SIZE)
+        .build(CacheLoader.from(AbstractBucket4jRateLimiter::createBucketConfiguration));
     private ProxyManager<String> buckets;
+    private GridProxy<String> gridProxy;
 
-    AbstractBucket4jRateLimiter(final Class<E> extension) {
+    AbstractBucket4jRateLimiter(final Class<E> extension, final RateLimiterErrorHandler rateLimiterErrorHandler) {
         this.extension = extension;
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
     }
 
     void init() {
         buckets = getProxyManager(getExtension());
+        gridProxy = getGridProxy();
     }
 
     private E getExtension() {
@@ -56,6 +88,13 @@ abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E
 
     protected abstract ProxyManager<String> getProxyManager(E extension);
 
+    protected abstract GridProxy<String> getGridProxy();
+
+    /**
+     * Stores the state under the key, unless the key already holds one.
+     */
+    protected abstract void putIfAbsent(String key, GridBucketState state);
+
     private Bucket getQuotaBucket(String key, Long quota, Long refreshInterval) {
         return buckets.getProxy(key + QUOTA_SUFFIX, getBucketConfiguration(quota, refreshInterval));
     }
@@ -64,10 +103,15 @@ abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E
         return buckets.getProxy(key, getBucketConfiguration(limit, refreshInterval));
     }
 
-    private Supplier<BucketConfiguration> getBucketConfiguration(Long capacity, Long period) {
-        return () -> Bucket4j.configurationBuilder()
-                .addLimit(Bandwidth.simple(capacity, Duration.ofSeconds(period)))
+    Supplier<BucketConfiguration> getBucketConfiguration(Long capacity, Long period) {
+        return configurations.getUnchecked(new BucketShape(capacity, period));
+    }
+
+    private static Supplier<BucketConfiguration> createBucketConfiguration(BucketShape shape) {
+        final BucketConfiguration configuration = Bucket4j.configurationBuilder()
+                .addLimit(Bandwidth.simple(shape.getCapacity(), Duration.ofSeconds(shape.getPeriod())))
                 .build();
+        return () -> configuration;
     }
 
     private void setRemaining(Rate rate, long remaining, boolean isQuota) {
@@ -80,6 +124,13 @@ abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E
 
     private void calcAndSetRemainingBucket(Long consume, Rate rate, Bucket bucket, boolean isQuota) {
         ConsumptionProbe consumptionProbe = bucket.tryConsumeAndReturnRemaining(consume);
+        setRemaining(rate, consumptionProbe, isQuota);
+        if (!consumptionProbe.isConsumed() && isQuota) {
+            bucket.tryConsumeAsMuchAsPossible(consume);
+        }
+    }
+
+    private void setRemaining(Rate rate, ConsumptionProbe consumptionProbe, boolean isQuota) {
         long nanosToWaitForRefill = consumptionProbe.getNanosToWaitForRefill();
         rate.setReset(NANOSECONDS.toMillis(nanosToWaitForRefill));
         if (consumptionProbe.isConsumed()) {
@@ -87,7 +138,6 @@ abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E
             setRemaining(rate, remainingTokens, isQuota);
         } else {
             setRemaining(rate, -1L, isQuota);
-            bucket.tryConsumeAsMuchAsPossible(consume);
         }
     }
 
@@ -98,19 +148,32 @@ abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E
     }
 
     @Override
-    protected void calcRemainingLimit(final Long limit, final Long refreshInterval, final Long requestTime,
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval,
+                                      final Long requestTime, final String key, final Rate rate) {
+        calcRemainingLimit(limit, refreshInterval, requestTime == null ? 1L : 0L, key, rate);
+    }
+
+    @Override
+    protected void calcRemainingLimit(final Long limit, final Long refreshInterval, final long usage,
                                       final String key, final Rate rate) {
         if (limit == null) {
             return;
         }
         Bucket bucket = getLimitBucket(key, limit, refreshInterval);
-        if (requestTime == null) {
-            calcAndSetRemainingBucket(1L, rate, bucket, false);
+        if (usage > 0) {
+            calcAndSetRemainingBucket(usage, rate, bucket, false);
         } else {
             calcAndSetRemainingBucket(bucket, rate, false);
         }
     }
 
+    /**
+     * Rejected permits are not taken from the bucket, there is nothing to give back.
+     */
+    @Override
+    protected void releaseLimit(final Long limit, final Long refreshInterval, final long permits, final String key) {
+    }
+
     @Override
     protected void calcRemainingQuota(final Long quota, final Long refreshInterval, final Long requestTime,
                                       final String key, final Rate rate) {
@@ -124,4 +187,189 @@ abstract class AbstractBucket4jRateLimiter<T extends AbstractBucketBuilder<T>, E
             calcAndSetRemainingBucket(bucket, rate, true);
         }
     }
+
+    /**
+     * Policies with both a limit and a quota keep them in a single grid entry, updated by one entry processor call.
+     */
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        if (!isCombined(policy)) {
+            return super.consume(policy, key, requestTime);
+        }
+        final Rate rate = new Rate(key, policy.getLimit(), SECONDS.toMillis(policy.getQuota()),
+            SECONDS.toMillis(policy.getRefreshInterval()), null);
+        final CombinedConsumeCommand.Result result = executeCombined(policy, key,
+            new CombinedConsumeCommand(requestTime == null ? 1L : 0L, requestTime == null ? 0L : requestTime));
+        if (result == null) {
+            return rate;
+        }
+        rate.setRemaining(result.getRemaining());
+        rate.setRemainingQuota(result.getRemainingQuota());
+        rate.setReset(result.getReset());
+        return rate;
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        if (!isCombined(policy)) {
+            return super.acquire(policy, key, permits);
+        }
+        final Rate rate = new Rate(key, policy.getLimit(), null, SECONDS.toMillis(policy.getRefreshInterval()), null);
+        final CombinedConsumeCommand.Result result = executeCombined(policy, key,
+            new CombinedConsumeCommand(permits, 0L));
+        if (result == null) {
+            return rate;
+        }
+        rate.setRemaining(result.getRemaining());
+        rate.setReset(result.getReset());
+        return rate;
+    }
+
+    private static boolean isCombined(Policy policy) {
+        return policy.getLimit() != null && policy.getQuota() != null;
+    }
+
+    /**
+     * Executes the command on the combined entry of the key, creating the entry first if the grid has none. The command
+     * is executed again once only, so an entry evicted or expired as soon as it is created cannot hold the request.
+     *
+     * @return the result of the command, or {@code null} when the entry could not be found, to answer with the policy
+     * limits
+     */
+    private CombinedConsumeCommand.Result executeCombined(Policy policy, String key, CombinedConsumeCommand command) {
+        final String combinedKey = key + COMBINED_SUFFIX;
+        CommandResult<CombinedConsumeCommand.Result> result = gridProxy.execute(combinedKey, command);
+        if (result.isBucketNotFound()) {
+            putIfAbsent(combinedKey, new CombinedBucketState(
+                getBucketConfiguration(policy.getLimit(), policy.getRefreshInterval()).get(),
+                getBucketConfiguration(SECONDS.toMillis(policy.getQuota()), policy.getRefreshInterval()).get(),
+                MILLISECONDS.toNanos(System.currentTimeMillis())));
+            result = gridProxy.execute(combinedKey, command);
+        }
+        if (result.isBucketNotFound()) {
+            rateLimiterErrorHandler.handleError("Failed retrieving rate for " + key + ", will return the policy limits",
+                new IllegalStateException("Entry " + combinedKey + " removed as soon as it was created"));
+            return null;
+        }
+        return result.getData();
+    }
+
+    /**
+     * Issues the limit consumption of all the policies as concurrent asynchronous calls when the grid supports them, so
+     * the request waits for the slowest call rather than for their sum. Every policy is consumed up front, so the
+     * requests taken from the policies following the first exceeded one are given back before returning. Batches with
+     * a policy holding both a limit and a quota are consumed one policy at a time.
+     */
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        if (requestTime != null || policies.size() < 2
+            || policies.stream().anyMatch(AbstractBucket4jRateLimiter::isCombined)) {
+            return super.consumeAll(policies, keys, requestTime);
+        }
+        final Bucket[] limitBuckets = getAsyncLimitBuckets(policies, keys);
+        if (limitBuckets == null) {
+            return super.consumeAll(policies, keys, null);
+        }
+        final List<CompletableFuture<ConsumptionProbe>> probes = tryConsume(limitBuckets);
+        final List<CompletableFuture<Void>> refunds = new ArrayList<>();
+        final List<Rate> rates = collect(policies, keys, limitBuckets, probes, refunds);
+        join(CompletableFuture.allOf(refunds.toArray(new CompletableFuture<?>[0])));
+        return rates;
+    }
+
+    /**
+     * Consumes the limits like {@link #consumeAll(List, List, Long)} and completes once the grid has answered, without
+     * blocking the calling thread. Bucket4j has no asynchronous read of the available tokens, so policies with a quota
+     * are consumed synchronously.
+     */
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        if (requestTime != null || policies.stream().anyMatch(policy -> policy.getQuota() != null)) {
+            return super.consumeAllAsync(policies, keys, requestTime);
+        }
+        final Bucket[] limitBuckets = getAsyncLimitBuckets(policies, keys);
+        if (limitBuckets == null) {
+            return super.consumeAllAsync(policies, keys, null);
+        }
+        final List<CompletableFuture<ConsumptionProbe>> probes = tryConsume(limitBuckets);
+        return CompletableFuture.allOf(probes.stream().filter(Objects::nonNull).toArray(CompletableFuture<?>[]::new))
+            .thenCompose(consumed -> {
+                final List<CompletableFuture<Void>> refunds = new ArrayList<>();
+                final List<Rate> rates = collect(policies, keys, limitBuckets, probes, refunds);
+                return CompletableFuture.allOf(refunds.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(refunded -> rates);
+            });
+    }
+
+    /**
+     * @return the limit buckets of the policies, or {@code null} if the grid does not support asynchronous calls
+     */
+    private Bucket[] getAsyncLimitBuckets(List<Policy> policies, List<String> keys) {
+        final Bucket[] limitBuckets = new Bucket[policies.size()];
+        for (int i = 0; i < limitBuckets.length; i++) {
+            final Policy policy = policies.get(i);
+            if (policy.getLimit() != null) {
+                limitBuckets[i] = getLimitBucket(keys.get(i), policy.getLimit(), policy.getRefreshInterval());
+                if (!limitBuckets[i].isAsyncModeSupported()) {
+                    return null;
+                }
+            }
+        }
+        return limitBuckets;
+    }
+
+    private static List<CompletableFuture<ConsumptionProbe>> tryConsume(Bucket[] limitBuckets) {
+        final List<CompletableFuture<ConsumptionProbe>> probes = new ArrayList<>(limitBuckets.length);
+        for (Bucket bucket : limitBuckets) {
+            probes.add(bucket != null ? bucket.asAsync().tryConsumeAndReturnRemaining(1L) : null);
+        }
+        return probes;
+    }
+
+    /**
+     * Builds the rates up to the first exceeded policy, reading the quotas, and gives back the limits consumed after
+     * it.
+     */
+    private List<Rate> collect(List<Policy> policies, List<String> keys, Bucket[] limitBuckets,
+                               List<CompletableFuture<ConsumptionProbe>> probes,
+                               List<CompletableFuture<Void>> refunds) {
+        final int size = policies.size();
+        final List<Rate> rates = new ArrayList<>(size);
+        boolean exceeded = false;
+        for (int i = 0; i < size; i++) {
+            final Policy policy = policies.get(i);
+            final Long quota = policy.getQuota() != null ? SECONDS.toMillis(policy.getQuota()) : null;
+            final Rate rate = new Rate(keys.get(i), policy.getLimit(), quota, null, null);
+            if (probes.get(i) != null) {
+                setRemaining(rate, join(probes.get(i)), false);
+            }
+            if (!exceeded) {
+                calcRemainingQuota(quota, policy.getRefreshInterval(), null, keys.get(i), rate);
+                rates.add(rate);
+                exceeded = RateLimiter.isExceeded(policy, rate);
+            } else if (rate.getRemaining() != null && rate.getRemaining() >= 0) {
+                refunds.add(limitBuckets[i].asAsync().addTokens(1L));
+            }
+        }
+        return rates;
+    }
+
+    @Value
+    private static class BucketShape {
+
+        long capacity;
+        long period;
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
@@ -16,11 +16,15 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
 import com.hazelcast.core.IMap;
 import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.GridProxy;
 import io.github.bucket4j.grid.ProxyManager;
 import io.github.bucket4j.grid.hazelcast.Hazelcast;
 import io.github.bucket4j.grid.hazelcast.HazelcastBucketBuilder;
+import io.github.bucket4j.grid.hazelcast.HazelcastProxy;
 
 /**
  * Bucket4j rate limiter configuration.
@@ -33,7 +37,12 @@ public class Bucket4jHazelcastRateLimiter extends AbstractBucket4jRateLimiter<Ha
     private final IMap<String, GridBucketState> rateLimit;
 
     public Bucket4jHazelcastRateLimiter(final IMap<String, GridBucketState> rateLimit) {
-        super(io.github.bucket4j.grid.hazelcast.Hazelcast.class);
+        this(new DefaultRateLimiterErrorHandler(), rateLimit);
+    }
+
+    public Bucket4jHazelcastRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                        final IMap<String, GridBucketState> rateLimit) {
+        super(io.github.bucket4j.grid.hazelcast.Hazelcast.class, rateLimiterErrorHandler);
         this.rateLimit = rateLimit;
         super.init();
     }
@@ -42,4 +51,14 @@ public class Bucket4jHazelcastRateLimiter extends AbstractBucket4jRateLimiter<Ha
     protected ProxyManager<String> getProxyManager(io.github.bucket4j.grid.hazelcast.Hazelcast extension) {
         return extension.proxyManagerForMap(rateLimit);
     }
+
+    @Override
+    protected GridProxy<String> getGridProxy() {
+        return new HazelcastProxy<>(rateLimit);
+    }
+
+    @Override
+    protected void putIfAbsent(String key, GridBucketState state) {
+        rateLimit.putIfAbsent(key, state);
+    }
 }
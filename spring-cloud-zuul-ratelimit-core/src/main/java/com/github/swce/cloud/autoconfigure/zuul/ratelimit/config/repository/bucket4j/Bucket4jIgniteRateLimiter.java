@@ -16,10 +16,14 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
 import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.GridProxy;
 import io.github.bucket4j.grid.ProxyManager;
 import io.github.bucket4j.grid.ignite.Ignite;
 import io.github.bucket4j.grid.ignite.IgniteBucketBuilder;
+import io.github.bucket4j.grid.ignite.IgniteProxy;
 import org.apache.ignite.IgniteCache;
 
 /**
@@ -33,7 +37,12 @@ public class Bucket4jIgniteRateLimiter extends AbstractBucket4jRateLimiter<Ignit
     private final IgniteCache<String, GridBucketState> cache;
 
     public Bucket4jIgniteRateLimiter(final IgniteCache<String, GridBucketState> cache) {
-        super(io.github.bucket4j.grid.ignite.Ignite.class);
+        this(new DefaultRateLimiterErrorHandler(), cache);
+    }
+
+    public Bucket4jIgniteRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                     final IgniteCache<String, GridBucketState> cache) {
+        super(io.github.bucket4j.grid.ignite.Ignite.class, rateLimiterErrorHandler);
         this.cache = cache;
         super.init();
     }
@@ -42,4 +51,14 @@ public class Bucket4jIgniteRateLimiter extends AbstractBucket4jRateLimiter<Ignit
     protected ProxyManager<String> getProxyManager(io.github.bucket4j.grid.ignite.Ignite extension) {
         return extension.proxyManagerForCache(cache);
     }
+
+    @Override
+    protected GridProxy<String> getGridProxy() {
+        return new IgniteProxy<>(cache);
+    }
+
+    @Override
+    protected void putIfAbsent(String key, GridBucketState state) {
+        cache.putIfAbsent(key, state);
+    }
 }
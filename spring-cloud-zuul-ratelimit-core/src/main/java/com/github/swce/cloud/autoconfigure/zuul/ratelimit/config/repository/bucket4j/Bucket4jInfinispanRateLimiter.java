@@ -16,10 +16,15 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
 import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.GridProxy;
 import io.github.bucket4j.grid.ProxyManager;
 import io.github.bucket4j.grid.infinispan.Infinispan;
 import io.github.bucket4j.grid.infinispan.InfinispanBucketBuilder;
+import io.github.bucket4j.grid.infinispan.InfinispanProxy;
+import org.infinispan.functional.EntryView.ReadWriteEntryView;
 import org.infinispan.functional.FunctionalMap.ReadWriteMap;
 
 /**
@@ -33,7 +38,12 @@ public class Bucket4jInfinispanRateLimiter extends AbstractBucket4jRateLimiter<I
     private final ReadWriteMap<String, GridBucketState> readWriteMap;
 
     public Bucket4jInfinispanRateLimiter(final ReadWriteMap<String, GridBucketState> readWriteMap) {
-        super(io.github.bucket4j.grid.infinispan.Infinispan.class);
+        this(new DefaultRateLimiterErrorHandler(), readWriteMap);
+    }
+
+    public Bucket4jInfinispanRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                         final ReadWriteMap<String, GridBucketState> readWriteMap) {
+        super(io.github.bucket4j.grid.infinispan.Infinispan.class, rateLimiterErrorHandler);
         this.readWriteMap = readWriteMap;
         super.init();
     }
@@ -42,4 +52,21 @@ public class Bucket4jInfinispanRateLimiter extends AbstractBucket4jRateLimiter<I
     protected ProxyManager<String> getProxyManager(io.github.bucket4j.grid.infinispan.Infinispan extension) {
         return extension.proxyManagerForMap(readWriteMap);
     }
+
+    @Override
+    protected GridProxy<String> getGridProxy() {
+        return new InfinispanProxy<>(readWriteMap);
+    }
+
+    @Override
+    protected void putIfAbsent(String key, GridBucketState state) {
+        readWriteMap.eval(key, state, Bucket4jInfinispanRateLimiter::setIfAbsent).join();
+    }
+
+    private static Void setIfAbsent(GridBucketState state, ReadWriteEntryView<String, GridBucketState> entry) {
+        if (!entry.find().isPresent()) {
+            entry.set(state);
+        }
+        return null;
+    }
 }
@@ -16,10 +16,14 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
 import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.GridProxy;
 import io.github.bucket4j.grid.ProxyManager;
 import io.github.bucket4j.grid.jcache.JCache;
 import io.github.bucket4j.grid.jcache.JCacheBucketBuilder;
+import io.github.bucket4j.grid.jcache.JCacheProxy;
 import javax.cache.Cache;
 
 /**
@@ -33,7 +37,12 @@ public class Bucket4jJCacheRateLimiter extends AbstractBucket4jRateLimiter<JCach
     private final Cache<String, GridBucketState> cache;
 
     public Bucket4jJCacheRateLimiter(final Cache<String, GridBucketState> cache) {
-        super(io.github.bucket4j.grid.jcache.JCache.class);
+        this(new DefaultRateLimiterErrorHandler(), cache);
+    }
+
+    public Bucket4jJCacheRateLimiter(final RateLimiterErrorHandler rateLimiterErrorHandler,
+                                     final Cache<String, GridBucketState> cache) {
+        super(io.github.bucket4j.grid.jcache.JCache.class, rateLimiterErrorHandler);
         this.cache = cache;
         super.init();
     }
@@ -42,4 +51,14 @@ public class Bucket4jJCacheRateLimiter extends AbstractBucket4jRateLimiter<JCach
     protected ProxyManager<String> getProxyManager(io.github.bucket4j.grid.jcache.JCache extension) {
         return extension.proxyManagerForCache(cache);
     }
+
+    @Override
+    protected GridProxy<String> getGridProxy() {
+        return new JCacheProxy<>(cache);
+    }
+
+    @Override
+    protected void putIfAbsent(String key, GridBucketState state) {
+        cache.putIfAbsent(key, state);
+    }
 }
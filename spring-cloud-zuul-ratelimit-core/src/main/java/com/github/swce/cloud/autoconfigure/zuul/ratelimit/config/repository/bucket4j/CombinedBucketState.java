@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
+
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.BucketState;
+import io.github.bucket4j.grid.GridBucketState;
+
+/**
+ * Grid entry holding the limit and the quota of a policy. The inherited state is the limit, the quota keeps a state of
+ * its own since Bucket4j consumes the same tokens from all the bandwidths of a bucket.
+ */
+class CombinedBucketState extends GridBucketState {
+
+    private static final long serialVersionUID = 1L;
+
+    private final GridBucketState quota;
+
+    CombinedBucketState(BucketConfiguration limit, BucketConfiguration quota, long currentTimeNanos) {
+        super(limit, BucketState.createInitialState(limit, currentTimeNanos));
+        this.quota = new GridBucketState(quota, BucketState.createInitialState(quota, currentTimeNanos));
+    }
+
+    private CombinedBucketState(BucketConfiguration limit, BucketState state, GridBucketState quota) {
+        super(limit, state);
+        this.quota = quota;
+    }
+
+    GridBucketState getQuota() {
+        return quota;
+    }
+
+    @Override
+    public GridBucketState deepCopy() {
+        return new CombinedBucketState(getConfiguration(), copyBucketState(), quota.deepCopy());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.grid.ConsumeAsMuchAsPossibleCommand;
+import io.github.bucket4j.grid.GetAvailableTokensCommand;
+import io.github.bucket4j.grid.GridBucketState;
+import io.github.bucket4j.grid.GridCommand;
+import io.github.bucket4j.grid.TryConsumeAndReturnRemainingTokensCommand;
+import java.io.Serializable;
+import lombok.Value;
+
+/**
+ * Consumes the limit and the quota of a {@link CombinedBucketState} in a single grid call. No tokens to consume only
+ * reads the remaining tokens, an exceeded quota is drained as the separate quota bucket is.
+ */
+class CombinedConsumeCommand implements GridCommand<CombinedConsumeCommand.Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long limitTokens;
+    private final long quotaTokens;
+    private boolean bucketStateModified;
+
+    CombinedConsumeCommand(long limitTokens, long quotaTokens) {
+        this.limitTokens = limitTokens;
+        this.quotaTokens = quotaTokens;
+    }
+
+    @Override
+    public Result execute(GridBucketState state, long currentTimeNanos) {
+        final GridBucketState quota = ((CombinedBucketState) state).getQuota();
+        Long reset = null;
+        final long remaining;
+        if (limitTokens > 0) {
+            final ConsumptionProbe probe = tryConsume(state, limitTokens, currentTimeNanos);
+            remaining = probe.isConsumed() ? probe.getRemainingTokens() : -1;
+            reset = NANOSECONDS.toMillis(probe.getNanosToWaitForRefill());
+        } else {
+            remaining = getRemaining(state, currentTimeNanos);
+        }
+        final long remainingQuota;
+        if (quotaTokens > 0) {
+            final ConsumptionProbe probe = tryConsume(quota, quotaTokens, currentTimeNanos);
+            if (!probe.isConsumed()) {
+                final ConsumeAsMuchAsPossibleCommand drain = new ConsumeAsMuchAsPossibleCommand(quotaTokens);
+                drain.execute(quota, currentTimeNanos);
+                bucketStateModified |= drain.isBucketStateModified();
+            }
+            remainingQuota = probe.isConsumed() ? probe.getRemainingTokens() : -1;
+            reset = NANOSECONDS.toMillis(probe.getNanosToWaitForRefill());
+        } else {
+            remainingQuota = getRemaining(quota, currentTimeNanos);
+        }
+        return new Result(remaining, remainingQuota, reset);
+    }
+
+    @Override
+    public boolean isBucketStateModified() {
+        return bucketStateModified;
+    }
+
+    private ConsumptionProbe tryConsume(GridBucketState state, long tokens, long currentTimeNanos) {
+        final TryConsumeAndReturnRemainingTokensCommand command = new TryConsumeAndReturnRemainingTokensCommand(tokens);
+        final ConsumptionProbe probe = command.execute(state, currentTimeNanos);
+        bucketStateModified |= command.isBucketStateModified();
+        return probe;
+    }
+
+    private static long getRemaining(GridBucketState state, long currentTimeNanos) {
+        final long availableTokens = new GetAvailableTokensCommand().execute(state, currentTimeNanos);
+        return availableTokens > 0 ? availableTokens : -1;
+    }
+
+    @Value
+    static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Remaining limit, {@code -1} once exceeded.
+         */
+        long remaining;
+        /**
+         * Remaining quota in milliseconds, {@code -1} once exceeded.
+         */
+        long remainingQuota;
+        /**
+         * Milliseconds to wait for the consumed bandwidth to refill, {@code null} when nothing was consumed.
+         */
+        Long reset;
+    }
+}
@@ -16,59 +16,95 @@
 
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
 
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.RATE_LIMIT_EVALUATION;
+
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
-import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.netflix.zuul.ZuulFilter;
 import com.netflix.zuul.context.RequestContext;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
 import org.springframework.cloud.netflix.zuul.filters.Route;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.web.util.UrlPathHelper;
 
 /**
  * @author Marcos Barbero
  * @author Liel Chayoun
  */
-@RequiredArgsConstructor
-public abstract class AbstractRateLimitFilter extends ZuulFilter {
+public abstract class AbstractRateLimitFilter extends ZuulFilter implements ApplicationListener<ApplicationEvent> {
+
+    private static final int ROUTES_CACHE_SIZE = 10_000;
 
     private final RateLimitProperties properties;
-    private final RouteLocator routeLocator;
     private final UrlPathHelper urlPathHelper;
-    private final RateLimitUtils rateLimitUtils;
+    private final RateLimitPolicyIndex policyIndex;
+    /**
+     * Matching route per request path, as matching scans the ant patterns of all the routes. Cleared on the events
+     * Zuul reloads its routes on.
+     */
+    private final LoadingCache<String, Optional<Route>> routes;
 
-    private boolean alreadyLimited;
+    public AbstractRateLimitFilter(final RateLimitProperties properties, final RouteLocator routeLocator,
+                                   final UrlPathHelper urlPathHelper, final RateLimitUtils rateLimitUtils) {
+        this.properties = properties;
+        this.urlPathHelper = urlPathHelper;
+        this.policyIndex = new RateLimitPolicyIndex(properties, rateLimitUtils);
+        this.routes = CacheBuilder.newBuilder()
+            .maximumSize(ROUTES_CACHE_SIZE)
+            .build(CacheLoader.from(path -> Optional.ofNullable(routeLocator.getMatchingRoute(path))));
+    }
+
+    @Override
+    public void onApplicationEvent(final ApplicationEvent event) {
+        if (event instanceof RoutesRefreshedEvent || event instanceof RefreshScopeRefreshedEvent
+            || event instanceof HeartbeatEvent) {
+            routes.invalidateAll();
+        }
+        if (event instanceof RefreshScopeRefreshedEvent || event instanceof EnvironmentChangeEvent) {
+            policyIndex.invalidate();
+        }
+    }
 
     @Override
     public boolean shouldFilter() {
-        HttpServletRequest request = RequestContext.getCurrentContext().getRequest();
-        return properties.isEnabled() && !policy(route(request), request).isEmpty();
+        return properties.isEnabled() && !evaluation().getPolicies().isEmpty();
+    }
+
+    /**
+     * Returns the policy evaluation of the current request, computing it on first access and caching it in the
+     * {@link RequestContext} for the remaining filters of the request.
+     *
+     * @return The {@link RateLimitEvaluation} of the current request
+     */
+    protected RateLimitEvaluation evaluation() {
+        final RequestContext ctx = RequestContext.getCurrentContext();
+        RateLimitEvaluation evaluation = (RateLimitEvaluation) ctx.get(RATE_LIMIT_EVALUATION);
+        if (evaluation == null) {
+            final HttpServletRequest request = ctx.getRequest();
+            evaluation = policyIndex.evaluate(request, route(request));
+            ctx.put(RATE_LIMIT_EVALUATION, evaluation);
+        }
+        return evaluation;
     }
 
     Route route(HttpServletRequest request) {
         String requestURI = urlPathHelper.getPathWithinApplication(request);
-        return routeLocator.getMatchingRoute(requestURI);
+        return routes.getUnchecked(requestURI).orElse(null);
     }
 
     protected List<Policy> policy(Route route, HttpServletRequest request) {
-        String routeId = Optional.ofNullable(route).map(Route::getId).orElse(null);
-        alreadyLimited = false;
-        return properties.getPolicies(routeId).stream()
-            .filter(policy -> applyPolicy(request, route, policy))
-            .collect(Collectors.toList());
-    }
-
-    private boolean applyPolicy(HttpServletRequest request, Route route, Policy policy) {
-        List<MatchType> types = policy.getType();
-        boolean tmp = alreadyLimited;
-        if(policy.isBreakOnMatch() && types.stream().allMatch(type -> type.apply(request, route, rateLimitUtils)))
-            alreadyLimited = true;
-        return (types.isEmpty() || types.stream().allMatch(type -> type.apply(request, route, rateLimitUtils))) && !tmp;
+        return policyIndex.evaluate(request, route).getPolicies();
     }
 }
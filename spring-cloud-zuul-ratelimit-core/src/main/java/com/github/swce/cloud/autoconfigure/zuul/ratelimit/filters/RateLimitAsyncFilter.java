@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Servlet filter consuming the rate limit policies of a request before it reaches Zuul. <p> While the repository
+ * answers, the request is put in asynchronous mode and the container thread is released. The request is dispatched
+ * again once the rates are known, and the {@link RateLimitPreFilter} decides on them, so the number of requests waiting
+ * for the repository is not bound by the container thread pool. Requests without asynchronous support and repositories
+ * answering before returning go through the chain on the same thread. Requests waiting longer than {@code timeout}
+ * milliseconds are reported to the {@link RateLimiterErrorHandler} and decided on the limits of their policies, like
+ * the repositories do on errors.
+ */
+public class RateLimitAsyncFilter extends OncePerRequestFilter {
+
+    private final RateLimitPreFilter preFilter;
+    private final RateLimiterErrorHandler rateLimiterErrorHandler;
+    private final long timeout;
+
+    public RateLimitAsyncFilter(final RateLimitPreFilter preFilter,
+                                final RateLimiterErrorHandler rateLimiterErrorHandler, final long timeout) {
+        this.preFilter = preFilter;
+        this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+        this.timeout = timeout;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        final RateLimitConsumption consumption = request.isAsyncSupported() ? preFilter.consumeAsync(request) : null;
+        if (consumption == null || consumption.getRates().isDone()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(timeout);
+        final AtomicBoolean dispatched = new AtomicBoolean();
+        asyncContext.addListener(new TimeoutListener(consumption, rateLimiterErrorHandler, dispatched));
+        consumption.getRates().whenComplete((rates, error) -> {
+            if (dispatched.compareAndSet(false, true)) {
+                asyncContext.dispatch();
+            }
+        });
+    }
+
+    /**
+     * Completes the consumption with the policy limits when the repository does not answer in time, unless the request
+     * was already dispatched.
+     */
+    private static final class TimeoutListener implements AsyncListener {
+
+        private final RateLimitConsumption consumption;
+        private final RateLimiterErrorHandler rateLimiterErrorHandler;
+        private final AtomicBoolean dispatched;
+
+        private TimeoutListener(RateLimitConsumption consumption, RateLimiterErrorHandler rateLimiterErrorHandler,
+                                AtomicBoolean dispatched) {
+            this.consumption = consumption;
+            this.rateLimiterErrorHandler = rateLimiterErrorHandler;
+            this.dispatched = dispatched;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (dispatched.compareAndSet(false, true)) {
+                if (consumption.completeWithPolicyLimits()) {
+                    rateLimiterErrorHandler.handleError("Failed retrieving rates for " + consumption.getKeys()
+                        + ", will return the policy limits", new TimeoutException("Rate limit repository timed out"));
+                }
+                event.getAsyncContext().dispatch();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
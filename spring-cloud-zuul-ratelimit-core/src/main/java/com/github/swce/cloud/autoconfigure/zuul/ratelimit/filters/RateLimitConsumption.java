@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Consumption of the policies of a request started before the request reached Zuul.
+ */
+@Getter
+@RequiredArgsConstructor
+final class RateLimitConsumption {
+
+    private final List<Policy> policies;
+    private final List<String> keys;
+    private final CompletableFuture<List<Rate>> rates;
+
+    /**
+     * Waits for the rates, which are usually available by the time the request reaches Zuul.
+     *
+     * @return the rates of the consumed policies
+     */
+    List<Rate> join() {
+        try {
+            return rates.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Completes the consumption with the limits of its policies, as if none of them had been consumed.
+     *
+     * @return {@code true} if the rates were not known yet
+     */
+    boolean completeWithPolicyLimits() {
+        final List<Rate> limits = new ArrayList<>(policies.size());
+        for (int i = 0; i < policies.size(); i++) {
+            final Policy policy = policies.get(i);
+            final Long quota = policy.getQuota() == null ? null : SECONDS.toMillis(policy.getQuota());
+            limits.add(new Rate(keys.get(i), policy.getLimit(), quota, SECONDS.toMillis(policy.getRefreshInterval()),
+                null));
+        }
+        return rates.complete(limits);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+/**
+ * Result of evaluating the rate limit policies for a single request. It is computed once per request and kept in the
+ * {@link com.netflix.zuul.context.RequestContext} so the pre and post filters share the same route and matched
+ * policies.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RateLimitEvaluation {
+
+    /**
+     * The route matching the request, or {@code null} if there is none.
+     */
+    private final Route route;
+
+    /**
+     * The policies applying to the request, in declaration order.
+     */
+    private final List<Policy> policies;
+
+    /**
+     * Whether the evaluation stopped at a policy with {@code breakOnMatch} enabled.
+     */
+    private final boolean brokeOnMatch;
+
+    /**
+     * The keys generated for the policies by the pre filter, or {@code null} before it runs.
+     */
+    @Setter
+    private volatile List<String> keys;
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_LIMIT;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_QUOTA;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_REMAINING;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_REMAINING_QUOTA;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_RESET;
+
+import lombok.Getter;
+
+/**
+ * The {@code X-RateLimit-*} header names of a single rate limit key.
+ */
+@Getter
+final class RateLimitHeaderNames {
+
+    private final String limit;
+    private final String remaining;
+    private final String quota;
+    private final String remainingQuota;
+    private final String reset;
+
+    RateLimitHeaderNames(String key) {
+        final String suffix = sanitize(key);
+        this.limit = HEADER_LIMIT + suffix;
+        this.remaining = HEADER_REMAINING + suffix;
+        this.quota = HEADER_QUOTA + suffix;
+        this.remainingQuota = HEADER_REMAINING_QUOTA + suffix;
+        this.reset = HEADER_RESET + suffix;
+    }
+
+    /**
+     * Replaces every character outside {@code [A-Za-z0-9-.]} with an underscore, then collapses each pair of
+     * underscores into one, scanning left to right.
+     *
+     * @param key the rate limit key
+     * @return the header suffix of the key
+     */
+    static String sanitize(String key) {
+        final int length = key.length();
+        final char[] chars = new char[length];
+        int size = 0;
+        boolean pendingUnderscore = false;
+        for (int i = 0; i < length; i++) {
+            final char c = key.charAt(i);
+            if (isAllowed(c)) {
+                if (pendingUnderscore) {
+                    chars[size++] = '_';
+                    pendingUnderscore = false;
+                }
+                chars[size++] = c;
+            } else if (pendingUnderscore) {
+                chars[size++] = '_';
+                pendingUnderscore = false;
+            } else {
+                pendingUnderscore = true;
+            }
+        }
+        if (pendingUnderscore) {
+            chars[size++] = '_';
+        }
+        return new String(chars, 0, size);
+    }
+
+    private static boolean isAllowed(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '.';
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitType;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+/**
+ * Compiled view of the configured policies. <p> For every route the policies are indexed once by their first
+ * USER, ORIGIN or HTTPMETHOD matcher (hash lookup) or URL matcher (prefix trie), so a request only evaluates the
+ * remaining matchers of the policies that can apply to it instead of scanning the whole policy list. <p> The index is
+ * rebuilt and swapped atomically whenever the policy lists of {@link RateLimitProperties} are replaced, e.g. when the
+ * {@code @RefreshScope} bean is reloaded, and after {@link #invalidate()}, for policies changed in place, e.g. when
+ * the properties are rebound.
+ */
+public class RateLimitPolicyIndex {
+
+    private final RateLimitProperties properties;
+    private final RateLimitUtils rateLimitUtils;
+
+    private volatile Snapshot snapshot;
+
+    public RateLimitPolicyIndex(final RateLimitProperties properties, final RateLimitUtils rateLimitUtils) {
+        this.properties = properties;
+        this.rateLimitUtils = rateLimitUtils;
+    }
+
+    /**
+     * Returns the policies applying to the giving request, honouring declaration order and {@code breakOnMatch}.
+     *
+     * @param request The {@link HttpServletRequest}
+     * @param route   The {@link Route} matching the request, may be {@code null}
+     * @return The {@link RateLimitEvaluation} of the request
+     */
+    public RateLimitEvaluation evaluate(final HttpServletRequest request, final Route route) {
+        String routeId = Optional.ofNullable(route).map(Route::getId).orElse(null);
+        return snapshot().get(routeId).evaluate(request, route, rateLimitUtils);
+    }
+
+    /**
+     * Rebuilds the index on the next evaluation, picking up the policies changed in place.
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        final List<Policy> defaultPolicyList = properties.getDefaultPolicyList();
+        final Map<String, List<Policy>> policyList = properties.getPolicyList();
+        Snapshot current = snapshot;
+        if (current == null || !current.isSource(defaultPolicyList, policyList)) {
+            current = new Snapshot(defaultPolicyList, policyList);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+
+        private final List<Policy> defaultPolicyList;
+        private final Map<String, List<Policy>> policyList;
+        private final CompiledPolicies defaultPolicies;
+        private final Map<String, CompiledPolicies> routePolicies = new HashMap<>();
+
+        private Snapshot(List<Policy> defaultPolicyList, Map<String, List<Policy>> policyList) {
+            this.defaultPolicyList = defaultPolicyList;
+            this.policyList = policyList;
+            this.defaultPolicies = new CompiledPolicies(defaultPolicyList);
+            policyList.forEach((routeId, policies) -> routePolicies.put(routeId, new CompiledPolicies(policies)));
+        }
+
+        private boolean isSource(List<Policy> defaultPolicyList, Map<String, List<Policy>> policyList) {
+            return this.defaultPolicyList == defaultPolicyList && this.policyList == policyList;
+        }
+
+        private CompiledPolicies get(String routeId) {
+            if (StringUtils.isEmpty(routeId)) {
+                return defaultPolicies;
+            }
+            return routePolicies.getOrDefault(routeId, defaultPolicies);
+        }
+    }
+
+    private static final class CompiledPolicies {
+
+        private final Policy[] policies;
+        private final MatchType[][] residualTypes;
+        private final BitSet unconditional = new BitSet();
+        private final BitSet urlPolicies = new BitSet();
+        private final Map<String, BitSet> users = new HashMap<>();
+        private final Map<String, BitSet> origins = new HashMap<>();
+        private final Map<String, BitSet> methods = new HashMap<>();
+        private final PrefixTrie urls = new PrefixTrie();
+
+        private CompiledPolicies(List<Policy> source) {
+            policies = source.toArray(new Policy[0]);
+            residualTypes = new MatchType[policies.length][];
+            for (int i = 0; i < policies.length; i++) {
+                compile(i, policies[i]);
+            }
+        }
+
+        private void compile(int index, Policy policy) {
+            MatchType indexed = null;
+            List<MatchType> residual = new ArrayList<>();
+            for (MatchType type : policy.getType()) {
+                if (StringUtils.isEmpty(type.getMatcher())) {
+                    continue;
+                }
+                if (indexed == null && isIndexable(type.getType())) {
+                    indexed = type;
+                } else {
+                    residual.add(type);
+                }
+            }
+            residualTypes[index] = residual.toArray(new MatchType[0]);
+
+            if (indexed == null) {
+                unconditional.set(index);
+                return;
+            }
+            String matcher = indexed.getMatcher();
+            switch (indexed.getType()) {
+                case USER:
+                    users.computeIfAbsent(matcher, k -> new BitSet()).set(index);
+                    break;
+                case ORIGIN:
+                    origins.computeIfAbsent(matcher, k -> new BitSet()).set(index);
+                    break;
+                case HTTPMETHOD:
+                    methods.computeIfAbsent(matcher.toUpperCase(Locale.ROOT), k -> new BitSet()).set(index);
+                    break;
+                case URL:
+                    urlPolicies.set(index);
+                    urls.add(matcher, index);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected indexed type " + indexed.getType());
+            }
+        }
+
+        private static boolean isIndexable(RateLimitType type) {
+            return type == RateLimitType.USER || type == RateLimitType.ORIGIN
+                || type == RateLimitType.HTTPMETHOD || type == RateLimitType.URL;
+        }
+
+        private RateLimitEvaluation evaluate(HttpServletRequest request, Route route, RateLimitUtils rateLimitUtils) {
+            List<Policy> matched = new ArrayList<>();
+            if (policies.length == 0) {
+                return new RateLimitEvaluation(route, matched, false);
+            }
+            BitSet candidates = (BitSet) unconditional.clone();
+            if (!users.isEmpty()) {
+                or(candidates, users.get(rateLimitUtils.getUser(request)));
+            }
+            if (!origins.isEmpty()) {
+                or(candidates, origins.get(rateLimitUtils.getRemoteAddress(request)));
+            }
+            if (!methods.isEmpty() && request.getMethod() != null) {
+                or(candidates, methods.get(request.getMethod().toUpperCase(Locale.ROOT)));
+            }
+            if (!urlPolicies.isEmpty()) {
+                if (route == null) {
+                    candidates.or(urlPolicies);
+                } else {
+                    urls.collect(route.getPath(), candidates);
+                }
+            }
+
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (applyResidual(residualTypes[i], request, route, rateLimitUtils)) {
+                    matched.add(policies[i]);
+                    if (policies[i].isBreakOnMatch()) {
+                        return new RateLimitEvaluation(route, matched, true);
+                    }
+                }
+            }
+            return new RateLimitEvaluation(route, matched, false);
+        }
+
+        private static void or(BitSet candidates, BitSet policies) {
+            if (policies != null) {
+                candidates.or(policies);
+            }
+        }
+
+        private static boolean applyResidual(MatchType[] types, HttpServletRequest request, Route route,
+                                             RateLimitUtils rateLimitUtils) {
+            for (MatchType type : types) {
+                if (!type.apply(request, route, rateLimitUtils)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class PrefixTrie {
+
+        private final Node root = new Node();
+
+        private void add(String prefix, int index) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+            }
+            node.policies.set(index);
+        }
+
+        private void collect(String path, BitSet candidates) {
+            if (path == null) {
+                return;
+            }
+            Node node = root;
+            for (int i = 0; i < path.length() && node != null; i++) {
+                node = node.children.get(path.charAt(i));
+                if (node != null) {
+                    candidates.or(node.policies);
+                }
+            }
+        }
+
+        private static final class Node {
+
+            private final Map<Character, Node> children = new HashMap<>();
+            private final BitSet policies = new BitSet();
+        }
+    }
+}
@@ -22,8 +22,10 @@ import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGen
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants;
 import com.netflix.zuul.context.RequestContext;
+import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.cloud.netflix.zuul.filters.Route;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
@@ -73,13 +75,17 @@ public class RateLimitPostFilter extends AbstractRateLimitFilter {
     public Object run() {
         RequestContext ctx = RequestContext.getCurrentContext();
         HttpServletRequest request = ctx.getRequest();
-        Route route = route(request);
+        RateLimitEvaluation evaluation = evaluation();
+        Route route = evaluation.getRoute();
+        List<Policy> policies = evaluation.getPolicies();
+        List<String> keys = evaluation.getKeys();
 
-        policy(route, request).forEach(policy -> {
+        for (int i = 0; i < policies.size(); i++) {
+            Policy policy = policies.get(i);
             long requestTime = System.currentTimeMillis() - getRequestStartTime();
-            String key = rateLimitKeyGenerator.key(request, route, policy);
+            String key = keys != null ? keys.get(i) : rateLimitKeyGenerator.key(request, route, policy);
             rateLimiter.consume(policy, key, requestTime > 0 ? requestTime : 1);
-        });
+        }
 
         return null;
     }
@@ -21,14 +21,23 @@ import static org.springframework.cloud.netflix.zuul.filters.support.FilterConst
 
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitListener;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitHeadersMode;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitRejectionMode;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitExceededException;
-import com.google.common.collect.Maps;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.netflix.zuul.context.RequestContext;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.springframework.cloud.netflix.zuul.filters.Route;
@@ -43,17 +52,53 @@ import org.springframework.web.util.UrlPathHelper;
  */
 public class RateLimitPreFilter extends AbstractRateLimitFilter {
 
+    private static final int HEADER_NAMES_CACHE_SIZE = 10_000;
+
     private final RateLimitProperties properties;
     private final RateLimiter rateLimiter;
     private final RateLimitKeyGenerator rateLimitKeyGenerator;
+    private final RateLimitListener rateLimitListener;
+    private final HeavyHitterTracker heavyHitterTracker;
+    /**
+     * Shared by all rejections, created on first use as the wrapped {@link com.netflix.zuul.exception.ZuulException}
+     * needs an initialized Zuul counter factory.
+     */
+    private volatile RateLimitExceededException rateLimitExceededException;
+    /**
+     * Header names per generated key, bounded as keys usually embed user or origin values.
+     */
+    private final LoadingCache<String, RateLimitHeaderNames> headerNames = CacheBuilder.newBuilder()
+        .maximumSize(HEADER_NAMES_CACHE_SIZE)
+        .build(CacheLoader.from(RateLimitHeaderNames::new));
 
     public RateLimitPreFilter(final RateLimitProperties properties, final RouteLocator routeLocator,
                               final UrlPathHelper urlPathHelper, final RateLimiter rateLimiter,
                               final RateLimitKeyGenerator rateLimitKeyGenerator, final RateLimitUtils rateLimitUtils) {
+        this(properties, routeLocator, urlPathHelper, rateLimiter, rateLimitKeyGenerator, rateLimitUtils,
+            RateLimitListener.NONE);
+    }
+
+    public RateLimitPreFilter(final RateLimitProperties properties, final RouteLocator routeLocator,
+                              final UrlPathHelper urlPathHelper, final RateLimiter rateLimiter,
+                              final RateLimitKeyGenerator rateLimitKeyGenerator, final RateLimitUtils rateLimitUtils,
+                              final RateLimitListener rateLimitListener) {
+        this(properties, routeLocator, urlPathHelper, rateLimiter, rateLimitKeyGenerator, rateLimitUtils,
+            rateLimitListener, null);
+    }
+
+    /**
+     * @param heavyHitterTracker Tracker recording the key of every consumed policy, {@code null} to track none
+     */
+    public RateLimitPreFilter(final RateLimitProperties properties, final RouteLocator routeLocator,
+                              final UrlPathHelper urlPathHelper, final RateLimiter rateLimiter,
+                              final RateLimitKeyGenerator rateLimitKeyGenerator, final RateLimitUtils rateLimitUtils,
+                              final RateLimitListener rateLimitListener, final HeavyHitterTracker heavyHitterTracker) {
         super(properties, routeLocator, urlPathHelper, rateLimitUtils);
         this.properties = properties;
         this.rateLimiter = rateLimiter;
         this.rateLimitKeyGenerator = rateLimitKeyGenerator;
+        this.rateLimitListener = rateLimitListener;
+        this.heavyHitterTracker = heavyHitterTracker;
     }
 
     @Override
@@ -71,48 +116,142 @@ public class RateLimitPreFilter extends AbstractRateLimitFilter {
         final RequestContext ctx = RequestContext.getCurrentContext();
         final HttpServletResponse response = ctx.getResponse();
         final HttpServletRequest request = ctx.getRequest();
-        final Route route = route(request);
-
-        policy(route, request).forEach(policy -> {
-            Map<String, String> responseHeaders = Maps.newHashMap();
+        final RateLimitEvaluation evaluation = evaluation();
+        final Route route = evaluation.getRoute();
+        final boolean addHeaders = properties.isAddResponseHeaders();
+        final boolean standardHeaders = properties.getHeadersMode() == RateLimitHeadersMode.STANDARD;
+        Policy closestPolicy = null;
+        Rate closestRate = null;
 
-            final String key = rateLimitKeyGenerator.key(request, route, policy);
-            final Rate rate = rateLimiter.consume(policy, key, null);
-            final String httpHeaderKey = key.replaceAll("[^A-Za-z0-9-.]", "_").replaceAll("__", "_");
+        final List<Policy> policies = evaluation.getPolicies();
+        final Object consumed = request.getAttribute(RateLimitConstants.RATE_LIMIT_CONSUMPTION);
+        final List<String> keys;
+        final List<Rate> rates;
+        final boolean started = consumed instanceof RateLimitConsumption
+            && ((RateLimitConsumption) consumed).getPolicies().equals(policies);
+        if (started) {
+            request.removeAttribute(RateLimitConstants.RATE_LIMIT_CONSUMPTION);
+            keys = ((RateLimitConsumption) consumed).getKeys();
+        } else {
+            keys = keys(request, route, policies);
+        }
+        evaluation.setKeys(keys);
+        try {
+            rates = started ? ((RateLimitConsumption) consumed).join() : rateLimiter.consumeAll(policies, keys, null);
+        } catch (RuntimeException e) {
+            for (Policy policy : policies) {
+                rateLimitListener.onError(route, policy, e);
+            }
+            throw e;
+        }
 
+        for (int i = 0; i < rates.size(); i++) {
+            final Policy policy = policies.get(i);
+            final Rate rate = rates.get(i);
             final Long limit = policy.getLimit();
             final Long remaining = rate.getRemaining();
-            if (limit != null) {
-                responseHeaders.put(RateLimitConstants.HEADER_LIMIT + httpHeaderKey, String.valueOf(limit));
-                responseHeaders.put(RateLimitConstants.HEADER_REMAINING + httpHeaderKey,
-                    String.valueOf(Math.max(remaining, 0)));
+            if (heavyHitterTracker != null) {
+                heavyHitterTracker.record(keys.get(i));
             }
-
-            final Long quota = policy.getQuota();
-            final Long remainingQuota = rate.getRemainingQuota();
-            if (quota != null) {
+            if (policy.getQuota() != null) {
                 request.setAttribute(RateLimitConstants.REQUEST_START_TIME, System.currentTimeMillis());
-                responseHeaders.put(RateLimitConstants.HEADER_QUOTA + httpHeaderKey, String.valueOf(quota));
-                responseHeaders.put(RateLimitConstants.HEADER_REMAINING_QUOTA + httpHeaderKey,
-                    String.valueOf(MILLISECONDS.toSeconds(Math.max(remainingQuota, 0))));
             }
 
-            responseHeaders.put(RateLimitConstants.HEADER_RESET + httpHeaderKey, String.valueOf(rate.getReset()));
-
-            if (properties.isAddResponseHeaders()) {
-                for (Map.Entry<String, String> headersEntry : responseHeaders.entrySet()) {
-                    response.setHeader(headersEntry.getKey(), headersEntry.getValue());
-                }
+            if (addHeaders && !standardHeaders) {
+                addHeaders(response, keys.get(i), policy, rate);
+            } else if (addHeaders && limit != null && (closestRate == null || remaining < closestRate.getRemaining())) {
+                closestPolicy = policy;
+                closestRate = rate;
             }
 
-            if ((limit != null && remaining < 0) || (quota != null && remainingQuota < 0)) {
+            if (RateLimiter.isExceeded(policy, rate)) {
+                addStandardHeaders(response, closestPolicy, closestRate);
+                rateLimitListener.onRejected(route, policy);
                 ctx.setResponseStatusCode(HttpStatus.TOO_MANY_REQUESTS.value());
                 ctx.put("rateLimitExceeded", "true");
                 ctx.setSendZuulResponse(false);
-                throw new RateLimitExceededException();
+                if (properties.getRejectionMode() == RateLimitRejectionMode.EXCEPTION) {
+                    throw rateLimitExceededException();
+                }
+                return null;
             }
-        });
+            rateLimitListener.onAllowed(route, policy);
+        }
 
+        addStandardHeaders(response, closestPolicy, closestRate);
         return null;
     }
+
+    /**
+     * Starts consuming the policies applying to a request that has not reached Zuul yet, without waiting for the
+     * repository. The consumption is kept in a request attribute, and {@link #run()} decides on its rates instead of
+     * consuming the policies again.
+     *
+     * @param request The request about to be routed
+     * @return the started consumption, or {@code null} if no policy applies to the request
+     */
+    RateLimitConsumption consumeAsync(final HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        final Route route = route(request);
+        final List<Policy> policies = policy(route, request);
+        if (policies.isEmpty()) {
+            return null;
+        }
+        final List<String> keys = keys(request, route, policies);
+        CompletableFuture<List<Rate>> rates;
+        try {
+            rates = rateLimiter.consumeAllAsync(policies, keys, null).toCompletableFuture();
+        } catch (RuntimeException e) {
+            rates = new CompletableFuture<>();
+            rates.completeExceptionally(e);
+        }
+        final RateLimitConsumption consumption = new RateLimitConsumption(policies, keys, rates);
+        request.setAttribute(RateLimitConstants.RATE_LIMIT_CONSUMPTION, consumption);
+        return consumption;
+    }
+
+    private List<String> keys(HttpServletRequest request, Route route, List<Policy> policies) {
+        final List<String> keys = new ArrayList<>(policies.size());
+        for (Policy policy : policies) {
+            keys.add(rateLimitKeyGenerator.key(request, route, policy));
+        }
+        return keys;
+    }
+
+    private void addHeaders(HttpServletResponse response, String key, Policy policy, Rate rate) {
+        final RateLimitHeaderNames names = headerNames.getUnchecked(key);
+        if (policy.getLimit() != null) {
+            response.setHeader(names.getLimit(), String.valueOf(policy.getLimit()));
+            response.setHeader(names.getRemaining(), String.valueOf(Math.max(rate.getRemaining(), 0)));
+        }
+        if (policy.getQuota() != null) {
+            response.setHeader(names.getQuota(), String.valueOf(policy.getQuota()));
+            response.setHeader(names.getRemainingQuota(),
+                String.valueOf(MILLISECONDS.toSeconds(Math.max(rate.getRemainingQuota(), 0))));
+        }
+        response.setHeader(names.getReset(), String.valueOf(rate.getReset()));
+    }
+
+    private void addStandardHeaders(HttpServletResponse response, Policy policy, Rate rate) {
+        if (rate == null) {
+            return;
+        }
+        response.setHeader(RateLimitConstants.HEADER_STANDARD_LIMIT, String.valueOf(policy.getLimit()));
+        response.setHeader(RateLimitConstants.HEADER_STANDARD_REMAINING,
+            String.valueOf(Math.max(rate.getRemaining(), 0)));
+        final Long reset = rate.getReset();
+        response.setHeader(RateLimitConstants.HEADER_STANDARD_RESET,
+            String.valueOf(reset == null ? 0 : (Math.max(reset, 0) + 999) / 1000));
+    }
+
+    private RateLimitExceededException rateLimitExceededException() {
+        RateLimitExceededException exception = rateLimitExceededException;
+        if (exception == null) {
+            exception = new RateLimitExceededException();
+            rateLimitExceededException = exception;
+        }
+        return exception;
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker.HeavyHitter;
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+
+/**
+ * Actuator endpoint listing the rate limit keys seen most often, with their estimated number of recent requests.
+ */
+public class HeavyHitterEndpoint extends AbstractEndpoint<List<HeavyHitter>> {
+
+    static final String ID = "ratelimitheavyhitters";
+
+    private final HeavyHitterTracker tracker;
+
+    public HeavyHitterEndpoint(final HeavyHitterTracker tracker) {
+        super(ID);
+        this.tracker = tracker;
+    }
+
+    @Override
+    public List<HeavyHitter> invoke() {
+        return tracker.top();
+    }
+}
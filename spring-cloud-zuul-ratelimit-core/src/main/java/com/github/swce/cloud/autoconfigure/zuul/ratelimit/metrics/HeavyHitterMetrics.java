@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker.HeavyHitter;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Publishes the estimated request count of the ten top ranked keys of a {@link HeavyHitterTracker}, and the share of the
+ * recent requests made with the top key. Keys are not used as tags, which would make the number of meters unbounded.
+ * <p> All the gauges of a scrape read the same ranking, computed again once older than a second.
+ */
+public class HeavyHitterMetrics implements MeterBinder {
+
+    static final String ESTIMATE_GAUGE = "ratelimit.heavyhitters.estimate";
+    static final String TOP_SHARE_GAUGE = "ratelimit.heavyhitters.top.share";
+    static final int RANKS = 10;
+
+    private final HeavyHitterTracker tracker;
+    private final Supplier<Ranking> ranking;
+
+    public HeavyHitterMetrics(final HeavyHitterTracker tracker) {
+        this.tracker = tracker;
+        this.ranking = Suppliers.memoizeWithExpiration(() -> new Ranking(tracker.top(), tracker.total()), 1, SECONDS);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        for (int rank = 1; rank <= RANKS; rank++) {
+            final int index = rank - 1;
+            Gauge.builder(ESTIMATE_GAUGE, tracker, t -> ranking.get().estimate(index))
+                .description("Estimated recent requests of the rate limit key at this rank")
+                .tag("rank", String.valueOf(rank))
+                .register(registry);
+        }
+        Gauge.builder(TOP_SHARE_GAUGE, tracker, t -> ranking.get().topShare())
+            .description("Share of the recent requests made with the most frequent rate limit key")
+            .register(registry);
+    }
+
+    @Value
+    private static class Ranking {
+
+        List<HeavyHitter> top;
+        long total;
+
+        double estimate(int index) {
+            return index < top.size() ? top.get(index).getEstimate() : 0;
+        }
+
+        double topShare() {
+            return total > 0 ? Math.min(1.0, estimate(0) / total) : 0;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Value;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Fixed-memory tracker of the rate limit keys seen most often. <p> Every key increments a Count-Min Sketch of {@code
+ * depth} rows of {@code width} counters, whose smallest counter estimates the key count from above. The {@code
+ * capacity} keys with the highest estimates are kept as candidates: as in Space-Saving, a key estimated above the
+ * smallest candidate replaces it once the candidates are full. Keys estimated below that floor return after updating
+ * the sketch, without becoming candidates. The rows are indexed by the 64-bit murmur3 hash of the key, so keys sharing
+ * a counter in one row rarely share it in the others. Updates only use atomic operations, and memory does not grow with
+ * the number of distinct keys. <p> All the counts are halved every {@code decayInterval} seconds, so the tracker follows
+ * the recent traffic.
+ */
+public class HeavyHitterTracker implements DisposableBean {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final AtomicLongArray sketch;
+    private final int mask;
+    private final int depth;
+    private final int capacity;
+    private final ConcurrentMap<String, AtomicLong> candidates = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    private final ScheduledExecutorService decayer;
+    private volatile long floor;
+
+    /**
+     * @param capacity      Number of keys tracked
+     * @param width         Counters per sketch row, rounded up to a power of two
+     * @param depth         Sketch rows
+     * @param decayInterval Seconds between halvings of the counts
+     */
+    public HeavyHitterTracker(final int capacity, final int width, final int depth, final long decayInterval) {
+        final int rowSize = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.sketch = new AtomicLongArray(rowSize * depth);
+        this.mask = rowSize - 1;
+        this.depth = depth;
+        this.capacity = capacity;
+        this.decayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ratelimit-heavy-hitters-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.decayer.scheduleWithFixedDelay(this::decay, decayInterval, decayInterval, SECONDS);
+    }
+
+    public void record(final String key) {
+        total.increment();
+        final long estimate = increment(HASH_FUNCTION.hashUnencodedChars(key).asLong());
+        final AtomicLong count = candidates.get(key);
+        if (count != null) {
+            count.accumulateAndGet(estimate, Math::max);
+        } else if (estimate > floor) {
+            if (candidates.size() < capacity) {
+                candidates.putIfAbsent(key, new AtomicLong(estimate));
+            } else {
+                replaceSmallest(key, estimate);
+            }
+        }
+    }
+
+    /**
+     * @return the tracked keys, from the most to the least frequent
+     */
+    public List<HeavyHitter> top() {
+        final List<HeavyHitter> top = new ArrayList<>(candidates.size());
+        candidates.forEach((key, count) -> top.add(new HeavyHitter(key, count.get())));
+        top.sort(Comparator.comparingLong(HeavyHitter::getEstimate).reversed());
+        return top;
+    }
+
+    /**
+     * @return the number of keys recorded since the last halving, halved like the counts
+     */
+    public long total() {
+        return total.sum();
+    }
+
+    @Override
+    public void destroy() {
+        decayer.shutdownNow();
+    }
+
+    /**
+     * Increments the counters of the key in each row, indexed by double hashing of the two halves of its hash.
+     *
+     * @return the estimated count of the key
+     */
+    private long increment(long hash) {
+        final int first = (int) hash;
+        final int second = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            final int index = row * (mask + 1) + ((first + row * second) & mask);
+            estimate = Math.min(estimate, sketch.incrementAndGet(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * Replaces the smallest candidate by the key if it is estimated above it, and raises the floor to the smallest
+     * remaining estimate. Concurrent replacements may briefly leave a few candidates more or less than the capacity.
+     */
+    private void replaceSmallest(String key, long estimate) {
+        Map.Entry<String, AtomicLong> smallest = null;
+        long secondSmallest = Long.MAX_VALUE;
+        for (Map.Entry<String, AtomicLong> candidate : candidates.entrySet()) {
+            if (smallest == null || candidate.getValue().get() < smallest.getValue().get()) {
+                if (smallest != null) {
+                    secondSmallest = Math.min(secondSmallest, smallest.getValue().get());
+                }
+                smallest = candidate;
+            } else {
+                secondSmallest = Math.min(secondSmallest, candidate.getValue().get());
+            }
+        }
+        if (smallest == null) {
+            candidates.putIfAbsent(key, new AtomicLong(estimate));
+            return;
+        }
+        final long smallestEstimate = smallest.getValue().get();
+        if (estimate <= smallestEstimate) {
+            floor = smallestEstimate;
+        } else if (candidates.remove(smallest.getKey(), smallest.getValue())) {
+            candidates.putIfAbsent(key, new AtomicLong(estimate));
+            floor = Math.min(secondSmallest, estimate);
+        }
+    }
+
+    void decay() {
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.getAndUpdate(i, count -> count >>> 1);
+        }
+        candidates.forEach((key, count) -> {
+            if (count.updateAndGet(value -> value >>> 1) == 0) {
+                candidates.remove(key, count);
+            }
+        });
+        total.add(-(total.sum() + 1) / 2);
+        floor >>>= 1;
+    }
+
+    @Value
+    public static class HeavyHitter {
+
+        String key;
+        /**
+         * Estimated number of recent requests, never lower than the actual number.
+         */
+        long estimate;
+    }
+}
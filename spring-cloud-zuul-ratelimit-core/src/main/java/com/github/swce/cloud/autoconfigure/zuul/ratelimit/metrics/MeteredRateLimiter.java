@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Times the calls to a {@link RateLimiter} backend, tagged with the configured repository, the operation and whether
+ * the call raised an error. Errors the backend reports without raising are counted by the
+ * {@link MeteredRateLimiterErrorHandler}.
+ */
+public class MeteredRateLimiter implements RateLimiter {
+
+    static final String CONSUME_TIMER = "ratelimit.consume";
+
+    private final RateLimiter delegate;
+    private final Clock clock;
+    private final OperationTimer consumeTimer;
+    private final OperationTimer acquireTimer;
+    private final OperationTimer consumeAllTimer;
+
+    MeteredRateLimiter(final RateLimiter delegate, final MeterRegistry meterRegistry, final String repository) {
+        this.delegate = delegate;
+        this.clock = meterRegistry.config().clock();
+        this.consumeTimer = new OperationTimer(meterRegistry, repository, "consume");
+        this.acquireTimer = new OperationTimer(meterRegistry, repository, "acquire");
+        this.consumeAllTimer = new OperationTimer(meterRegistry, repository, "consume_all");
+    }
+
+    public RateLimiter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Rate consume(final Policy policy, final String key, final Long requestTime) {
+        final long start = clock.monotonicTime();
+        boolean failed = true;
+        try {
+            final Rate rate = delegate.consume(policy, key, requestTime);
+            failed = false;
+            return rate;
+        } finally {
+            consumeTimer.record(clock.monotonicTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<Rate> consumeAll(final List<Policy> policies, final List<String> keys, final Long requestTime) {
+        final long start = clock.monotonicTime();
+        boolean failed = true;
+        try {
+            final List<Rate> rates = delegate.consumeAll(policies, keys, requestTime);
+            failed = false;
+            return rates;
+        } finally {
+            consumeAllTimer.record(clock.monotonicTime() - start, failed);
+        }
+    }
+
+    /**
+     * Times the call until the returned stage completes, as failed when it completes exceptionally.
+     */
+    @Override
+    public CompletionStage<List<Rate>> consumeAllAsync(final List<Policy> policies, final List<String> keys,
+                                                       final Long requestTime) {
+        final long start = clock.monotonicTime();
+        final CompletionStage<List<Rate>> rates;
+        try {
+            rates = delegate.consumeAllAsync(policies, keys, requestTime);
+        } catch (RuntimeException e) {
+            consumeAllTimer.record(clock.monotonicTime() - start, true);
+            throw e;
+        }
+        return rates.whenComplete(
+            (result, error) -> consumeAllTimer.record(clock.monotonicTime() - start, error != null));
+    }
+
+    @Override
+    public boolean supportsAcquire() {
+        return delegate.supportsAcquire();
+    }
+
+    @Override
+    public Rate acquire(final Policy policy, final String key, final long permits) {
+        final long start = clock.monotonicTime();
+        boolean failed = true;
+        try {
+            final Rate rate = delegate.acquire(policy, key, permits);
+            failed = false;
+            return rate;
+        } finally {
+            acquireTimer.record(clock.monotonicTime() - start, failed);
+        }
+    }
+
+    /**
+     * Timers of an operation, one per outcome, so the calls and the raised errors are published as monotonic counts.
+     */
+    private static final class OperationTimer {
+
+        private final Timer success;
+        private final Timer error;
+
+        private OperationTimer(MeterRegistry meterRegistry, String repository, String operation) {
+            this.success = timer(meterRegistry, repository, operation, "success");
+            this.error = timer(meterRegistry, repository, operation, "error");
+        }
+
+        private static Timer timer(MeterRegistry meterRegistry, String repository, String operation, String outcome) {
+            return Timer.builder(CONSUME_TIMER)
+                .description("Time spent by the rate limit repository")
+                .tag("repository", repository)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+        }
+
+        private void record(long duration, boolean failed) {
+            (failed ? error : success).record(duration, NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the backend errors reported to a {@link RateLimiterErrorHandler} before handing them over.
+ */
+public class MeteredRateLimiterErrorHandler implements RateLimiterErrorHandler {
+
+    static final String ERRORS_COUNTER = "ratelimit.errors";
+
+    private final RateLimiterErrorHandler delegate;
+    private final Counter saveErrors;
+    private final Counter fetchErrors;
+    private final Counter otherErrors;
+
+    MeteredRateLimiterErrorHandler(final RateLimiterErrorHandler delegate, final MeterRegistry meterRegistry,
+                                   final String repository) {
+        this.delegate = delegate;
+        this.saveErrors = counter(meterRegistry, repository, "save");
+        this.fetchErrors = counter(meterRegistry, repository, "fetch");
+        this.otherErrors = counter(meterRegistry, repository, "other");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String repository, String type) {
+        return Counter.builder(ERRORS_COUNTER)
+            .description("Errors reported by the rate limit repository")
+            .tag("repository", repository)
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void handleSaveError(final String key, final Exception e) {
+        saveErrors.increment();
+        delegate.handleSaveError(key, e);
+    }
+
+    @Override
+    public void handleFetchError(final String key, final Exception e) {
+        fetchErrors.increment();
+        delegate.handleFetchError(key, e);
+    }
+
+    @Override
+    public void handleError(final String msg, final Exception e) {
+        otherErrors.increment();
+        delegate.handleError(msg, e);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitListener;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+/**
+ * Counts the rate limit decisions per route and policy. <p> The counters of a route and policy are registered on first
+ * use and looked up afterwards by route id and policy identity, so recording a decision does not allocate. The policy
+ * tag is the position of the policy in the list configured for the route.
+ */
+public class RateLimitMetrics implements RateLimitListener {
+
+    static final String DECISIONS_COUNTER = "ratelimit.decisions";
+    static final String NO_ROUTE = "none";
+
+    private final ConcurrentMap<String, RouteMeters> routes = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final RateLimitProperties properties;
+    private final RouteMeters noRoute;
+
+    public RateLimitMetrics(final MeterRegistry meterRegistry, final RateLimitProperties properties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        this.noRoute = new RouteMeters(null);
+    }
+
+    @Override
+    public void onAllowed(final Route route, final Policy policy) {
+        meters(route, policy).allowed.increment();
+    }
+
+    @Override
+    public void onRejected(final Route route, final Policy policy) {
+        meters(route, policy).rejected.increment();
+    }
+
+    @Override
+    public void onError(final Route route, final Policy policy, final RuntimeException e) {
+        meters(route, policy).errored.increment();
+    }
+
+    private PolicyMeters meters(Route route, Policy policy) {
+        if (route == null) {
+            return noRoute.meters(policy);
+        }
+        RouteMeters routeMeters = routes.get(route.getId());
+        if (routeMeters == null) {
+            routeMeters = routes.computeIfAbsent(route.getId(), RouteMeters::new);
+        }
+        return routeMeters.meters(policy);
+    }
+
+    private final class RouteMeters {
+
+        private final String routeId;
+        private volatile Map<Policy, PolicyMeters> policies = new IdentityHashMap<>();
+
+        private RouteMeters(String routeId) {
+            this.routeId = routeId;
+        }
+
+        private PolicyMeters meters(Policy policy) {
+            PolicyMeters meters = policies.get(policy);
+            if (meters == null) {
+                meters = register(policy);
+            }
+            return meters;
+        }
+
+        private synchronized PolicyMeters register(Policy policy) {
+            PolicyMeters meters = policies.get(policy);
+            if (meters == null) {
+                Map<Policy, PolicyMeters> copy = new IdentityHashMap<>(policies);
+                meters = new PolicyMeters(routeId != null ? routeId : NO_ROUTE, policyTag(policy));
+                copy.put(policy, meters);
+                policies = copy;
+            }
+            return meters;
+        }
+
+        private String policyTag(Policy policy) {
+            List<Policy> configured = properties.getPolicies(routeId);
+            for (int i = 0; i < configured.size(); i++) {
+                if (configured.get(i) == policy) {
+                    return String.valueOf(i);
+                }
+            }
+            return String.valueOf(configured.indexOf(policy));
+        }
+    }
+
+    private final class PolicyMeters {
+
+        private final Counter allowed;
+        private final Counter rejected;
+        private final Counter errored;
+
+        private PolicyMeters(String route, String policy) {
+            this.allowed = counter(route, policy, "allowed");
+            this.rejected = counter(route, policy, "rejected");
+            this.errored = counter(route, policy, "error");
+        }
+
+        private Counter counter(String route, String policy, String decision) {
+            return Counter.builder(DECISIONS_COUNTER)
+                .description("Rate limit decisions taken by the pre filter")
+                .tag("route", route)
+                .tag("policy", policy)
+                .tag("decision", decision)
+                .register(meterRegistry);
+        }
+    }
+}
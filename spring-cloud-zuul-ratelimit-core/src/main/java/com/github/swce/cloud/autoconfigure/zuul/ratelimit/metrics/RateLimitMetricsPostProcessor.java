@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+/**
+ * Instruments the {@link RateLimiter} and {@link RateLimiterErrorHandler} beans. <p> Runs before any other rate limiter
+ * decoration, so the timers measure the repository itself. Calls and errors are published as monotonic counts, so the
+ * error ratio over any period is computed by the monitoring backend, whatever the number of registries and readers.
+ */
+public class RateLimitMetricsPostProcessor implements BeanPostProcessor, BeanFactoryAware, Ordered {
+
+    private BeanFactory beanFactory;
+    private MeterRegistry meterRegistry;
+    private String repository;
+
+    @Override
+    public void setBeanFactory(final BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (bean instanceof RateLimiter && !(bean instanceof MeteredRateLimiter)) {
+            initialize();
+            return new MeteredRateLimiter((RateLimiter) bean, meterRegistry, repository);
+        }
+        if (bean instanceof RateLimiterErrorHandler && !(bean instanceof MeteredRateLimiterErrorHandler)) {
+            initialize();
+            return new MeteredRateLimiterErrorHandler((RateLimiterErrorHandler) bean, meterRegistry, repository);
+        }
+        return bean;
+    }
+
+    private synchronized void initialize() {
+        if (meterRegistry != null) {
+            return;
+        }
+        meterRegistry = beanFactory.getBean(MeterRegistry.class);
+        repository = String.valueOf(beanFactory.getBean(RateLimitProperties.class).getRepository());
+    }
+}
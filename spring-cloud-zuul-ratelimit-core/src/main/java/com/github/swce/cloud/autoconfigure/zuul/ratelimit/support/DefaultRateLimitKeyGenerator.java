@@ -20,7 +20,8 @@ import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGen
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
-import java.util.StringJoiner;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
@@ -36,22 +37,53 @@ import org.springframework.cloud.netflix.zuul.filters.Route;
 @RequiredArgsConstructor
 public class DefaultRateLimitKeyGenerator implements RateLimitKeyGenerator {
 
+    private static final char SEPARATOR = ':';
+    private static final int BUILDER_CAPACITY = 128;
+    private static final int MAX_BUILDER_CAPACITY = 4096;
+
+    /**
+     * Reused by the keys generated on a thread, so that the key itself is the only allocation.
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER =
+        ThreadLocal.withInitial(() -> new StringBuilder(BUILDER_CAPACITY));
+
     private final RateLimitProperties properties;
     private final RateLimitUtils rateLimitUtils;
 
+    /**
+     * Builds the same key as joining with {@code ':'} the key prefix, the route id and the non empty
+     * {@link MatchType#key(HttpServletRequest, Route, RateLimitUtils)} of every match type.
+     */
     @Override
     public String key(final HttpServletRequest request, final Route route, final Policy policy) {
-        final StringJoiner joiner = new StringJoiner(":");
-        joiner.add(properties.getKeyPrefix());
+        final StringBuilder builder = builder();
+        builder.append(properties.getKeyPrefix());
         if (route != null) {
-            joiner.add(route.getId());
+            builder.append(SEPARATOR).append(route.getId());
         }
-        policy.getType().forEach(matchType -> {
-            String key = matchType.key(request, route, rateLimitUtils);
-            if (StringUtils.isNotEmpty(key)) {
-                joiner.add(key);
+        final List<MatchType> types = policy.getType();
+        for (int i = 0; i < types.size(); i++) {
+            final MatchType matchType = types.get(i);
+            final String matcher = matchType.getMatcher();
+            final String key = matchType.getType().key(request, route, rateLimitUtils, matcher);
+            final boolean hasMatcher = StringUtils.isNotEmpty(matcher);
+            if (hasMatcher || key == null || !key.isEmpty()) {
+                builder.append(SEPARATOR).append(key);
+                if (hasMatcher) {
+                    builder.append(SEPARATOR).append(matcher);
+                }
             }
-        });
-        return joiner.toString();
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder builder() {
+        StringBuilder builder = BUILDER.get();
+        if (builder.capacity() > MAX_BUILDER_CAPACITY) {
+            builder = new StringBuilder(BUILDER_CAPACITY);
+            BUILDER.set(builder);
+        }
+        builder.setLength(0);
+        return builder;
     }
 }
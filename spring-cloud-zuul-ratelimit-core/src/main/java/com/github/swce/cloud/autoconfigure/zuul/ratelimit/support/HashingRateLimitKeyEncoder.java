@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyEncoder;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Encodes a key as its 128-bit murmur3 hash in unpadded URL-safe base64, i.e. 22 characters whatever the length of the
+ * key. A key starting with the key prefix keeps it, so the keys of an application can still be told apart. <p> With
+ * the DEBUG level enabled, e.g. at runtime through the loggers actuator endpoint, every key is logged along with its
+ * encoding the first time it is seen.
+ */
+@Slf4j
+public class HashingRateLimitKeyEncoder implements RateLimitKeyEncoder {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+    private static final int LOGGED_KEYS_SIZE = 10_000;
+
+    private final String keyPrefix;
+    private final Cache<String, Boolean> loggedKeys = CacheBuilder.newBuilder()
+        .maximumSize(LOGGED_KEYS_SIZE)
+        .build();
+
+    public HashingRateLimitKeyEncoder(final String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public String encode(final String key) {
+        final String hash = ENCODING.encode(HASH_FUNCTION.hashString(key, UTF_8).asBytes());
+        final String encoded = StringUtils.isNotEmpty(keyPrefix) && key.startsWith(keyPrefix)
+            ? keyPrefix + ':' + hash : hash;
+        if (log.isDebugEnabled() && loggedKeys.asMap().putIfAbsent(key, Boolean.TRUE) == null) {
+            log.debug("Rate limit key {} encoded as {}", key, encoded);
+        }
+        return encoded;
+    }
+}
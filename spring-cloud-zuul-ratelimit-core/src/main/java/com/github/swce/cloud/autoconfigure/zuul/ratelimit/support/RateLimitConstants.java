@@ -32,6 +32,11 @@ public final class RateLimitConstants {
     public static final String HEADER_LIMIT = "X-RateLimit-Limit-";
     public static final String HEADER_REMAINING = "X-RateLimit-Remaining-";
     public static final String HEADER_RESET = "X-RateLimit-Reset-";
+    public static final String HEADER_STANDARD_LIMIT = "RateLimit-Limit";
+    public static final String HEADER_STANDARD_REMAINING = "RateLimit-Remaining";
+    public static final String HEADER_STANDARD_RESET = "RateLimit-Reset";
     public static final String REQUEST_START_TIME = "rateLimitRequestStartTime";
+    public static final String RATE_LIMIT_EVALUATION = "rateLimitEvaluation";
+    public static final String RATE_LIMIT_CONSUMPTION = "rateLimitConsumption";
 
 }
@@ -0,0 +1,111 @@
+-- Atomically consumes the rate limit counters of the policies of a request, in order.
+-- ARGV[1]              caller time in milliseconds, used by sliding window and GCRA counters when the server cannot
+--                      replicate script effects (before Redis 3.2), the server time is used otherwise
+-- KEYS[i]              counter key (limit or quota)
+-- ARGV[5 * i - 3]      usage to add to the counter
+-- ARGV[5 * i - 2]      counter window in seconds
+-- ARGV[5 * i - 1]      counter limit
+-- ARGV[5 * i]          1 when the counter is the last one of its policy, 0 otherwise
+-- ARGV[5 * i + 1]      0 for a fixed window counter, 1 for a sliding window counter that only counts usage within
+--                      its limit, 2 for a sliding window counter that counts all usage, 3 for a GCRA counter that only
+--                      counts usage within its limit, 4 for a GCRA counter that counts all usage, 5 for a fixed window
+--                      counter that only counts usage within its limit
+-- Stops after the policy holding the first counter that exceeds its limit.
+-- Returns {current_1, ttl_1, current_2, ttl_2, ...} with the ttl in milliseconds. The current value of a sliding window
+-- counter is the estimate including the usage, and the current value of a GCRA counter the usage its theoretical
+-- arrival time would hold including the usage, whether it was counted or not.
+local now = tonumber(ARGV[1])
+-- TIME is only allowed in scripts replicated by their effects, it must be enabled before the first write
+if redis.replicate_commands and redis.replicate_commands() then
+    local time = redis.call('TIME')
+    now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+local function fixed(key, usage, window, limit, admitOnly)
+    local current = redis.call('INCRBY', key, usage)
+    if admitOnly and current > limit then
+        redis.call('DECRBY', key, usage)
+    end
+    local ttl = redis.call('PTTL', key)
+    if ttl < 0 then
+        redis.call('EXPIRE', key, window)
+        ttl = window * 1000
+    end
+    return current, ttl
+end
+
+-- Keeps the window start and the counts of the previous and current windows in a hash, and weights the previous count
+-- by the share of the previous window still covered by a window ending now.
+local function sliding(key, usage, window, limit, admitOnly)
+    local length = window * 1000
+    local state = redis.call('HMGET', key, 's', 'p', 'c')
+    local start = tonumber(state[1])
+    local previous = tonumber(state[2]) or 0
+    local count = tonumber(state[3]) or 0
+    if not start then
+        start = now
+    else
+        local elapsed = math.floor((now - start) / length)
+        if elapsed >= 1 then
+            if elapsed == 1 then
+                previous = count
+            else
+                previous = 0
+            end
+            count = 0
+            start = start + elapsed * length
+        end
+    end
+    local estimate = math.floor(previous * math.max(0, length - (now - start)) / length) + count + usage
+    if not admitOnly or estimate <= limit then
+        count = count + usage
+    end
+    redis.call('HMSET', key, 's', start, 'p', previous, 'c', count)
+    redis.call('PEXPIRE', key, start + 2 * length - now)
+    return estimate, start + length - now
+end
+
+-- Keeps the theoretical arrival time in microseconds, spaces the usage by the window divided by the limit and admits it
+-- while the arrival time stays within a window from now.
+local function gcra(key, usage, window, limit, admitOnly)
+    local length = window * 1000000
+    local micros = now * 1000
+    local arrival = tonumber(redis.call('GET', key)) or micros
+    if arrival < micros then
+        arrival = micros
+    end
+    local needed = arrival + usage * math.max(1, math.floor(length / limit))
+    if not admitOnly or needed - micros <= length then
+        arrival = needed
+        if arrival > micros then
+            redis.call('SET', key, string.format('%d', arrival), 'PX', math.ceil((arrival - micros) / 1000))
+        end
+    end
+    return math.ceil((needed - micros) * limit / length), math.ceil((arrival - micros) / 1000)
+end
+
+local result = {}
+local exceeded = false
+for i = 1, #KEYS do
+    local usage = tonumber(ARGV[5 * i - 3])
+    local window = tonumber(ARGV[5 * i - 2])
+    local limit = tonumber(ARGV[5 * i - 1])
+    local mode = ARGV[5 * i + 1]
+    local current, ttl
+    if mode == '0' or mode == '5' then
+        current, ttl = fixed(KEYS[i], usage, window, limit, mode == '5')
+    elseif mode == '1' or mode == '2' then
+        current, ttl = sliding(KEYS[i], usage, window, limit, mode == '1')
+    else
+        current, ttl = gcra(KEYS[i], usage, window, limit, mode == '3')
+    end
+    result[2 * i - 1] = current
+    result[2 * i] = ttl
+    if current > limit then
+        exceeded = true
+    end
+    if exceeded and ARGV[5 * i] == '1' then
+        break
+    end
+end
+return result
@@ -0,0 +1,6 @@
+-- Keys longer than counter_key fail to be stored, enable key-encoding.enabled when they may exceed it.
+CREATE TABLE rate_limit_counter (
+    counter_key  VARCHAR(255) NOT NULL PRIMARY KEY,
+    window_start BIGINT       NOT NULL,
+    used         BIGINT       NOT NULL
+);
@@ -5,21 +5,43 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyEncoder;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitListener;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.CircuitBreakingRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.CircuitBreakingRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DenyCachingRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.InMemoryRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.JdbcRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.KeyEncodingRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.LeasingRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.LettuceRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RedisScriptRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jHazelcastRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jIgniteRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jInfinispanRateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j.Bucket4jJCacheRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitAsyncFilter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.MeteredRateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.MeteredRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterEndpoint;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.RateLimitMetrics;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.HashingRateLimitKeyEncoder;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.StringToMatchTypeConverter;
 import com.hazelcast.core.IMap;
 import com.netflix.zuul.ZuulFilter;
 import io.github.bucket4j.grid.GridBucketState;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
 import java.util.Map;
+import javax.sql.DataSource;
 import org.apache.ignite.IgniteCache;
 import org.infinispan.functional.FunctionalMap.ReadWriteMap;
 import org.junit.After;
@@ -28,10 +50,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.mock.web.MockServletContext;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
 
@@ -55,6 +78,14 @@ public class RateLimitAutoConfigurationTest {
     public void tearDown() {
         System.clearProperty(PREFIX + ".enabled");
         System.clearProperty(PREFIX + ".repository");
+        System.clearProperty(PREFIX + ".redis.script-enabled");
+        System.clearProperty(PREFIX + ".redis.async-enabled");
+        System.clearProperty(PREFIX + ".lease.enabled");
+        System.clearProperty(PREFIX + ".async.enabled");
+        System.clearProperty(PREFIX + ".heavy-hitters.enabled");
+        System.clearProperty(PREFIX + ".deny-cache.enabled");
+        System.clearProperty(PREFIX + ".key-encoding.enabled");
+        System.clearProperty(PREFIX + ".circuit-breaker.enabled");
         System.clearProperty(PREFIX + ".defaultPolicyList");
         System.clearProperty(PREFIX + ".policyList");
 
@@ -89,6 +120,24 @@ public class RateLimitAutoConfigurationTest {
         Assert.assertTrue(this.context.getBean(RateLimiter.class) instanceof RedisRateLimiter);
     }
 
+    @Test
+    public void testRedisScriptRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "REDIS");
+        System.setProperty(PREFIX + ".redis.script-enabled", "true");
+        this.context.refresh();
+
+        Assert.assertTrue(this.context.getBean(RateLimiter.class) instanceof RedisScriptRateLimiter);
+    }
+
+    @Test
+    public void testLettuceRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "REDIS");
+        System.setProperty(PREFIX + ".redis.async-enabled", "true");
+        this.context.refresh();
+
+        Assert.assertTrue(this.context.getBean(RateLimiter.class) instanceof LettuceRateLimiter);
+    }
+
     @Test
     public void testBucket4jJCacheRateLimiterByProperty() {
         System.setProperty(PREFIX + ".repository", "BUCKET4J_JCACHE");
@@ -121,6 +170,119 @@ public class RateLimitAutoConfigurationTest {
         Assert.assertTrue(this.context.getBean(RateLimiter.class) instanceof Bucket4jInfinispanRateLimiter);
     }
 
+    @Test
+    public void testInMemoryRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        this.context.refresh();
+
+        Assert.assertTrue(this.context.getBean(RateLimiter.class) instanceof InMemoryRateLimiter);
+    }
+
+    @Test
+    public void testLeasingRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        System.setProperty(PREFIX + ".lease.enabled", "true");
+        this.context.refresh();
+
+        RateLimiter rateLimiter = this.context.getBean(RateLimiter.class);
+        Assert.assertTrue(rateLimiter instanceof LeasingRateLimiter);
+        Assert.assertTrue(((LeasingRateLimiter) rateLimiter).getDelegate() instanceof InMemoryRateLimiter);
+    }
+
+    @Test
+    public void testDenyCachingRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        System.setProperty(PREFIX + ".lease.enabled", "true");
+        System.setProperty(PREFIX + ".deny-cache.enabled", "true");
+        this.context.refresh();
+
+        RateLimiter rateLimiter = this.context.getBean(RateLimiter.class);
+        Assert.assertTrue(rateLimiter instanceof DenyCachingRateLimiter);
+        Assert.assertTrue(((DenyCachingRateLimiter) rateLimiter).getDelegate() instanceof LeasingRateLimiter);
+    }
+
+    @Test
+    public void testKeyEncodingRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        System.setProperty(PREFIX + ".key-encoding.enabled", "true");
+        this.context.refresh();
+
+        RateLimiter rateLimiter = this.context.getBean(RateLimiter.class);
+        Assert.assertTrue(rateLimiter instanceof KeyEncodingRateLimiter);
+        Assert.assertTrue(((KeyEncodingRateLimiter) rateLimiter).getDelegate() instanceof InMemoryRateLimiter);
+        Assert.assertTrue(this.context.getBean(RateLimitKeyEncoder.class) instanceof HashingRateLimitKeyEncoder);
+    }
+
+    @Test
+    public void testCircuitBreakingRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        System.setProperty(PREFIX + ".circuit-breaker.enabled", "true");
+        this.context.refresh();
+
+        RateLimiter rateLimiter = this.context.getBean(RateLimiter.class);
+        Assert.assertTrue(rateLimiter instanceof CircuitBreakingRateLimiter);
+        Assert.assertTrue(((CircuitBreakingRateLimiter) rateLimiter).getDelegate() instanceof InMemoryRateLimiter);
+        Assert.assertTrue(
+            this.context.getBean(RateLimiterErrorHandler.class) instanceof CircuitBreakingRateLimiterErrorHandler);
+    }
+
+    @Test
+    public void testAsyncFilterByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        System.setProperty(PREFIX + ".async.enabled", "true");
+        this.context.refresh();
+
+        FilterRegistrationBean registration = this.context.getBean(FilterRegistrationBean.class);
+        Assert.assertTrue(registration.getFilter() instanceof RateLimitAsyncFilter);
+    }
+
+    @Test
+    public void testMetricsWithMeterRegistry() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        this.context = new AnnotationConfigWebApplicationContext();
+        this.context.setServletContext(new MockServletContext());
+        this.context.register(Conf.class, MetricsConf.class, RateLimitAutoConfiguration.class);
+        this.context.refresh();
+
+        RateLimiter rateLimiter = this.context.getBean(RateLimiter.class);
+        Assert.assertTrue(rateLimiter instanceof MeteredRateLimiter);
+        Assert.assertTrue(((MeteredRateLimiter) rateLimiter).getDelegate() instanceof InMemoryRateLimiter);
+        Assert.assertTrue(this.context.getBean(RateLimiterErrorHandler.class) instanceof MeteredRateLimiterErrorHandler);
+        Assert.assertTrue(this.context.getBean(RateLimitListener.class) instanceof RateLimitMetrics);
+    }
+
+    @Test
+    public void testHeavyHittersByProperty() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        System.setProperty(PREFIX + ".heavy-hitters.enabled", "true");
+        this.context = new AnnotationConfigWebApplicationContext();
+        this.context.setServletContext(new MockServletContext());
+        this.context.register(Conf.class, MetricsConf.class, RateLimitAutoConfiguration.class);
+        this.context.refresh();
+
+        Assert.assertNotNull(this.context.getBean(HeavyHitterTracker.class));
+        Assert.assertNotNull(this.context.getBean(HeavyHitterEndpoint.class));
+        Assert.assertNotNull(this.context.getBean(MeterRegistry.class).find("ratelimit.heavyhitters.top.share").gauge());
+    }
+
+    @Test
+    public void testNoMetricsWithoutMeterRegistry() {
+        System.setProperty(PREFIX + ".repository", "IN_MEMORY");
+        this.context.refresh();
+
+        Assert.assertTrue(this.context.getBeansOfType(RateLimitListener.class).isEmpty());
+        Assert.assertTrue(this.context.getBeansOfType(HeavyHitterTracker.class).isEmpty());
+        Assert.assertFalse(this.context.getBean(RateLimiter.class) instanceof MeteredRateLimiter);
+    }
+
+    @Test
+    public void testJdbcRateLimiterByProperty() {
+        System.setProperty(PREFIX + ".repository", "JDBC");
+        this.context.refresh();
+
+        Assert.assertTrue(this.context.getBean(RateLimiter.class) instanceof JdbcRateLimiter);
+    }
+
     @Test
     public void testDefaultRateLimitKeyGenerator() {
         System.setProperty(PREFIX + ".repository", "BUCKET4J_JCACHE");
@@ -166,8 +328,13 @@ public class RateLimitAutoConfigurationTest {
         }
 
         @Bean
-        public RedisConnectionFactory redisConnectionFactory() {
-            return Mockito.mock(RedisConnectionFactory.class);
+        public LettuceConnectionFactory redisConnectionFactory() {
+            return Mockito.mock(LettuceConnectionFactory.class);
+        }
+
+        @Bean
+        public DataSource dataSource() {
+            return Mockito.mock(DataSource.class);
         }
 
         @Bean
@@ -191,4 +358,13 @@ public class RateLimitAutoConfigurationTest {
             return Mockito.mock(ReadWriteMap.class);
         }
     }
+
+    @Configuration
+    public static class MetricsConf {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
 }
\ No newline at end of file
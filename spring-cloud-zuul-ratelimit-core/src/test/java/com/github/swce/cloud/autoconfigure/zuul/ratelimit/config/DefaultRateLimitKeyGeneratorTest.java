@@ -177,4 +177,16 @@ public class DefaultRateLimitKeyGeneratorTest {
         String key = target.key(httpServletRequest, route, policy);
         assertThat(key).isEqualTo("key-prefix:id:http-method:GET");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testKeyMultipleTypes() {
+        Policy policy = new Policy();
+        policy.getType().add(new MatchType(RateLimitType.URL, null));
+        policy.getType().add(new MatchType(RateLimitType.ORIGIN, "remote"));
+        policy.getType().add(new MatchType(RateLimitType.HTTPMETHOD, null));
+        when(httpServletRequest.getMethod()).thenReturn("GET");
+
+        assertThat(target.key(httpServletRequest, route, policy)).isEqualTo("key-prefix:id:/**:remote:remote:GET");
+        assertThat(target.key(httpServletRequest, null, policy)).isEqualTo("key-prefix:remote:remote:GET");
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class AbstractCacheRateLimiterTest {
+
+    private final AtomicLong counter = new AtomicLong();
+    private final AbstractCacheRateLimiter target = new AbstractCacheRateLimiter() {
+
+        @Override
+        protected void calcRemainingLimit(Long limit, Long refreshInterval, Long requestTime, String key, Rate rate) {
+            long current = requestTime == null ? counter.incrementAndGet() : counter.get();
+            rate.setRemaining(Math.max(-1, limit - current));
+        }
+
+        @Override
+        protected void calcRemainingQuota(Long quota, Long refreshInterval, Long requestTime, String key, Rate rate) {
+        }
+    };
+
+    @Test
+    public void testAcquireThroughRequestTimeSignature() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+
+        assertThat(target.acquire(policy, "key", 4L).getRemaining()).isEqualTo(6L);
+        assertThat(target.consume(policy, "key", null).getRemaining()).isEqualTo(5L);
+        assertThat(target.consume(policy, "key", 100L).getRemaining()).isEqualTo(5L);
+        assertThat(counter.get()).isEqualTo(5L);
+    }
+}
@@ -1,14 +1,20 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.matches;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -23,18 +29,11 @@ public class AbstractRateLimiterTest {
     private RateLimiterErrorHandler rateLimiterErrorHandler;
 
     @Before
-    public void setUp() throws Exception {
+    public void setUp() {
         MockitoAnnotations.initMocks(this);
-        target = Mockito.mock(AbstractRateLimiter.class, Mockito.CALLS_REAL_METHODS);
-        Field rateLimiterErrorHandler = AbstractRateLimiter.class.getDeclaredField("rateLimiterErrorHandler");
-        boolean accessible = rateLimiterErrorHandler.isAccessible();
-        rateLimiterErrorHandler.setAccessible(true);
-        Field modifiersField = Field.class.getDeclaredField("modifiers");
-        modifiersField.setAccessible(true);
-        modifiersField.setInt(rateLimiterErrorHandler, rateLimiterErrorHandler.getModifiers() & ~Modifier.FINAL);
-        rateLimiterErrorHandler.set(target, this.rateLimiterErrorHandler);
-        rateLimiterErrorHandler.setAccessible(accessible);
-        modifiersField.setInt(rateLimiterErrorHandler, rateLimiterErrorHandler.getModifiers() & Modifier.FINAL);
+        target = Mockito.mock(AbstractRateLimiter.class, Mockito.withSettings()
+            .useConstructor(rateLimiterErrorHandler)
+            .defaultAnswer(Mockito.CALLS_REAL_METHODS));
     }
 
     @Test
@@ -54,4 +53,49 @@ public class AbstractRateLimiterTest {
         target.consume(policy, "key", 0L);
         verify(rateLimiterErrorHandler).handleSaveError(matches("key"), any());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConsumeConcurrently() throws Exception {
+        Map<String, Rate> rates = new ConcurrentHashMap<>();
+        AbstractRateLimiter limiter = new AbstractRateLimiter(rateLimiterErrorHandler, 4) {
+            @Override
+            protected Rate getRate(String key) {
+                Rate rate = rates.get(key);
+                return rate == null ? null
+                    : new Rate(key, rate.getRemaining(), rate.getRemainingQuota(), rate.getReset(), rate.getExpiration());
+            }
+
+            @Override
+            protected void saveRate(Rate rate) {
+                rates.put(rate.getKey(), rate);
+            }
+        };
+        Policy policy = new Policy();
+        policy.setLimit(10_000L);
+        policy.setRefreshInterval(60L);
+
+        int threads = 8;
+        int requests = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            String key = "key" + (i % 2);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int j = 0; j < requests; j++) {
+                    limiter.consume(policy, key, null);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(rates.get("key0").getRemaining()).isEqualTo(10_000L - (threads / 2) * requests);
+        assertThat(rates.get("key1").getRemaining()).isEqualTo(10_000L - (threads / 2) * requests);
+    }
+}
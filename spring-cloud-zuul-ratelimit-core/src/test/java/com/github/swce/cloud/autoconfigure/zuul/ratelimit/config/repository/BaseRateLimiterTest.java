@@ -5,6 +5,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
 public abstract class BaseRateLimiterTest {
@@ -48,4 +50,60 @@ public abstract class BaseRateLimiterTest {
         assertThat(rate.getRemaining()).isEqualTo(9L);
         assertThat(rate.getRemainingQuota()).isEqualTo(200L);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAcquire() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setRefreshInterval(2L);
+
+        Rate rate = target.acquire(policy, "key", 4L);
+        assertThat(rate.getRemaining()).isEqualTo(6L);
+
+        rate = target.acquire(policy, "key", 7L);
+        assertThat(rate.getRemaining()).isEqualTo(-1L);
+
+        rate = target.acquire(policy, "key", 6L);
+        assertThat(rate.getRemaining()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testConsumeAll() {
+        Policy first = new Policy();
+        first.setLimit(10L);
+        first.setRefreshInterval(2L);
+        Policy exceeded = new Policy();
+        exceeded.setLimit(1L);
+        exceeded.setRefreshInterval(2L);
+        Policy skipped = new Policy();
+        skipped.setLimit(10L);
+        skipped.setRefreshInterval(2L);
+        target.consume(exceeded, "exceeded", null);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(first, exceeded, skipped),
+            Arrays.asList("first", "exceeded", "skipped"), null);
+
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, -1L);
+        assertThat(target.consume(skipped, "skipped", null).getRemaining()).isEqualTo(9L);
+    }
+
+    @Test
+    public void testConsumeAllAsync() {
+        Policy first = new Policy();
+        first.setLimit(10L);
+        first.setRefreshInterval(2L);
+        Policy exceeded = new Policy();
+        exceeded.setLimit(1L);
+        exceeded.setRefreshInterval(2L);
+        Policy skipped = new Policy();
+        skipped.setLimit(10L);
+        skipped.setRefreshInterval(2L);
+        target.consume(exceeded, "exceeded", null);
+
+        List<Rate> rates = target.consumeAllAsync(Arrays.asList(first, exceeded, skipped),
+            Arrays.asList("first", "exceeded", "skipped"), null).toCompletableFuture().join();
+
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, -1L);
+        assertThat(target.consume(skipped, "skipped", null).getRemaining()).isEqualTo(9L);
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.InMemory;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanFactory;
+
+public class CircuitBreakingRateLimiterTest extends BaseRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger nodes = new AtomicInteger(1);
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private InMemoryRateLimiter delegate;
+    private InMemoryRateLimiter fallback;
+    private CircuitBreakerState breaker;
+
+    @Before
+    public void setUp() {
+        delegate = spy(new InMemoryRateLimiter(100, 60));
+        fallback = spy(new InMemoryRateLimiter(100, 60));
+        breaker = new CircuitBreakerState(0.5, 100, 4, 1000, 500, nodes::get, clock::get);
+        RateLimiterErrorHandler errorHandler = new CircuitBreakingRateLimiterErrorHandler(
+            mock(RateLimiterErrorHandler.class), breaker);
+        RateLimiter backend = new RateLimiter() {
+            @Override
+            public Rate consume(Policy policy, String key, Long requestTime) {
+                if (failing.get()) {
+                    errorHandler.handleError("Failed retrieving rate for " + key, new IllegalStateException());
+                }
+                return delegate.consume(policy, key, requestTime);
+            }
+
+            @Override
+            public Rate acquire(Policy policy, String key, long permits) {
+                return delegate.acquire(policy, key, permits);
+            }
+        };
+        target = new CircuitBreakingRateLimiter(backend, fallback, breaker);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.destroy();
+        fallback.destroy();
+    }
+
+    private Policy policy(long limit) {
+        Policy policy = new Policy();
+        policy.setLimit(limit);
+        policy.setRefreshInterval(60L);
+        return policy;
+    }
+
+    private void failCalls(Policy policy, int count) {
+        failing.set(true);
+        for (int i = 0; i < count; i++) {
+            target.consume(policy, "key", null);
+        }
+        failing.set(false);
+    }
+
+    @Test
+    public void testOpensOnReportedErrors() {
+        Policy policy = policy(100L);
+        failCalls(policy, 3);
+        assertThat(breaker.isOpen()).isFalse();
+
+        failCalls(policy, 1);
+        target.consume(policy, "key", null);
+
+        assertThat(breaker.isOpen()).isTrue();
+        verify(delegate, times(4)).consume(policy, "key", null);
+        verify(fallback).consume(any(), any(), any());
+    }
+
+    @Test
+    public void testOpensOnRaisedErrors() {
+        RateLimiter failing = mock(RateLimiter.class);
+        doThrow(new IllegalStateException()).when(failing).consume(any(), any(), any());
+        target = new CircuitBreakingRateLimiter(failing, fallback, breaker);
+        Policy policy = policy(100L);
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> target.consume(policy, "key", null)).isInstanceOf(IllegalStateException.class);
+        }
+        Rate rate = target.consume(policy, "key", null);
+
+        assertThat(rate.getRemaining()).isEqualTo(99L);
+        verify(failing, times(4)).consume(any(), any(), any());
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() {
+        RateLimiter slow = (policy, key, requestTime) -> {
+            clock.addAndGet(100);
+            return new Rate(key, 1L, null, 1000L, null);
+        };
+        target = new CircuitBreakingRateLimiter(slow, fallback, breaker);
+
+        for (int i = 0; i < 4; i++) {
+            target.consume(policy(100L), "key", null);
+        }
+
+        assertThat(breaker.isOpen()).isTrue();
+    }
+
+    @Test
+    public void testFailuresCountedPerWindow() {
+        Policy policy = policy(100L);
+        failCalls(policy, 2);
+        clock.addAndGet(1000);
+        for (int i = 0; i < 4; i++) {
+            target.consume(policy, "key", null);
+        }
+        failCalls(policy, 2);
+
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    public void testFallbackDividesLimitByNodes() {
+        nodes.set(4);
+        failCalls(policy(100L), 4);
+
+        Rate rate = target.consume(policy(10L), "other", null);
+
+        assertThat(rate.getRemaining()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testProbeClosesBreaker() {
+        Policy policy = policy(100L);
+        failCalls(policy, 4);
+        reset(delegate);
+
+        clock.addAndGet(499);
+        target.consume(policy, "key", null);
+        verify(delegate, never()).consume(any(), any(), any());
+
+        clock.addAndGet(1);
+        target.consume(policy, "key", null);
+        verify(delegate).consume(policy, "key", null);
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    public void testFailedProbeOpensBreakerAgain() {
+        Policy policy = policy(100L);
+        failCalls(policy, 4);
+        clock.addAndGet(500);
+
+        failCalls(policy, 1);
+        reset(delegate);
+        target.consume(policy, "key", null);
+
+        assertThat(breaker.isOpen()).isTrue();
+        verify(delegate, never()).consume(any(), any(), any());
+    }
+
+    @Test
+    public void testHangingProbeOpensBreakerAgain() {
+        failCalls(policy(100L), 4);
+        clock.addAndGet(500);
+        CircuitBreakerState.Call probe = breaker.start();
+        assertThat(probe).isNotNull();
+
+        clock.addAndGet(99);
+        assertThat(breaker.start()).isNull();
+        clock.addAndGet(1);
+        assertThat(breaker.start()).isNull();
+        probe.end(null);
+
+        assertThat(breaker.isOpen()).isTrue();
+        clock.addAndGet(500);
+        assertThat(breaker.start()).isNotNull();
+    }
+
+    @Test
+    public void testNoProbeWhileOpening() {
+        AtomicReference<CircuitBreakerState.Call> interleaved = new AtomicReference<>();
+        breaker = new CircuitBreakerState(0.5, 100, 4, 1000, 500, () -> {
+            interleaved.set(breaker.start());
+            return 1;
+        }, clock::get);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.start().end(new IllegalStateException());
+        }
+        interleaved.get().end(null);
+
+        assertThat(breaker.isOpen()).isTrue();
+        assertThat(breaker.start()).isNull();
+    }
+
+    @Test
+    public void testConsumeAllAsyncReportsOutcomeOnCompletion() {
+        CompletableFuture<List<Rate>> rates = new CompletableFuture<>();
+        RateLimiter pending = mock(RateLimiter.class);
+        when(pending.consumeAllAsync(any(), any(), any())).thenReturn(rates);
+        target = new CircuitBreakingRateLimiter(pending, fallback, breaker);
+        List<Policy> policies = Arrays.asList(policy(100L));
+
+        for (int i = 0; i < 4; i++) {
+            target.consumeAllAsync(policies, Arrays.asList("key"), null);
+        }
+        assertThat(breaker.isOpen()).isFalse();
+
+        rates.completeExceptionally(new IllegalStateException());
+        assertThat(breaker.isOpen()).isTrue();
+    }
+
+    @Test
+    public void testPostProcessorDestroysFallbackWithBean() {
+        BeanFactory beanFactory = mock(BeanFactory.class);
+        when(beanFactory.getBean(RateLimitProperties.class)).thenReturn(new RateLimitProperties());
+        CircuitBreakingRateLimiterPostProcessor postProcessor = new CircuitBreakingRateLimiterPostProcessor() {
+            @Override
+            InMemoryRateLimiter createFallback(InMemory inMemory) {
+                return fallback;
+            }
+        };
+        postProcessor.setBeanFactory(beanFactory);
+
+        Object bean = postProcessor.postProcessAfterInitialization(delegate, "rateLimiter");
+        assertThat(bean).isInstanceOf(CircuitBreakingRateLimiter.class);
+        assertThat(postProcessor.requiresDestruction(delegate)).isTrue();
+        postProcessor.postProcessBeforeDestruction(delegate, "rateLimiter");
+
+        verify(fallback).destroy();
+    }
+}
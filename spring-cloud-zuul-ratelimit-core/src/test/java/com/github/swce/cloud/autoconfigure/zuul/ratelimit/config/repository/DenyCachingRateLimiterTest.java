@@ -0,0 +1,150 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DenyCachingRateLimiterTest extends BaseRateLimiterTest {
+
+    private InMemoryRateLimiter delegate;
+
+    @Before
+    public void setUp() {
+        delegate = spy(new InMemoryRateLimiter(100, 60));
+        target = new DenyCachingRateLimiter(delegate, 2);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.destroy();
+    }
+
+    @Test
+    public void testConsumeDeniedFromMemory() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setRefreshInterval(60L);
+
+        target.consume(policy, "key", null);
+        Rate exceeded = target.consume(policy, "key", null);
+        Rate denied = target.consume(policy, "key", null);
+
+        assertThat(exceeded.getRemaining()).isEqualTo(-1L);
+        assertThat(denied.getRemaining()).isEqualTo(-1L);
+        assertThat(denied.getReset()).isPositive().isLessThanOrEqualTo(exceeded.getReset());
+        verify(delegate, times(2)).consume(policy, "key", null);
+    }
+
+    @Test
+    public void testConsumeAfterReset() throws InterruptedException {
+        RateLimiter rateLimiter = (policy, key, requestTime) -> new Rate(key, -1L, null, 50L, null);
+        target = new DenyCachingRateLimiter(rateLimiter, 2);
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+
+        target.consume(policy, "key", null);
+        assertThat(((DenyCachingRateLimiter) target).size()).isEqualTo(1);
+        Thread.sleep(60L);
+        target.consume(policy, "key", null);
+
+        assertThat(((DenyCachingRateLimiter) target).size()).isEqualTo(1);
+        assertThat(target.consume(policy, "key", null).getReset()).isLessThanOrEqualTo(50L);
+    }
+
+    @Test
+    public void testConsumeWithRequestTimeIsNotDenied() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setQuota(1L);
+
+        target.consume(policy, "key", null);
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", 200L);
+
+        assertThat(rate.getRemainingQuota()).isEqualTo(800L);
+        verify(delegate).consume(policy, "key", 200L);
+    }
+
+    @Test
+    public void testConsumeAllStopsAtDeniedKey() {
+        Policy first = new Policy();
+        first.setLimit(10L);
+        Policy exceeded = new Policy();
+        exceeded.setLimit(1L);
+        Policy skipped = new Policy();
+        skipped.setLimit(10L);
+        target.consume(exceeded, "exceeded", null);
+        target.consume(exceeded, "exceeded", null);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(first, exceeded, skipped),
+            Arrays.asList("first", "exceeded", "skipped"), null);
+
+        assertThat(rates).extracting(Rate::getKey).containsExactly("first", "exceeded");
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, -1L);
+        verify(delegate).consumeAll(Arrays.asList(first), Arrays.asList("first"), null);
+    }
+
+    @Test
+    public void testConsumeAllAsyncDeniedFirstKey() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        target.consume(policy, "key", null);
+        target.consume(policy, "key", null);
+
+        List<Rate> rates = target.consumeAllAsync(Arrays.asList(policy, policy), Arrays.asList("key", "other"), null)
+            .toCompletableFuture().join();
+
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(-1L);
+        verify(delegate, never()).consumeAllAsync(anyList(), anyList(), any());
+    }
+
+    @Test
+    public void testEvictEndedDenialFirst() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        RateLimiter rateLimiter = (policy, key, requestTime) -> {
+            calls.incrementAndGet();
+            return new Rate(key, -1L, null, "ending".equals(key) ? 50L : 60_000L, null);
+        };
+        target = new DenyCachingRateLimiter(rateLimiter, 2);
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+
+        target.consume(policy, "kept", null);
+        target.consume(policy, "ending", null);
+        Thread.sleep(60L);
+        target.consume(policy, "new", null);
+        target.consume(policy, "kept", null);
+
+        assertThat(((DenyCachingRateLimiter) target).size()).isEqualTo(2);
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testMaxKeys() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+
+        for (int i = 0; i < 5; i++) {
+            target.consume(policy, "key" + i, null);
+            target.consume(policy, "key" + i, null);
+        }
+
+        assertThat(((DenyCachingRateLimiter) target).size()).isLessThanOrEqualTo(2);
+        assertThat(target.consume(policy, "key4", null).getRemaining()).isEqualTo(-1L);
+        verify(delegate, times(2)).consume(policy, "key4", null);
+    }
+}
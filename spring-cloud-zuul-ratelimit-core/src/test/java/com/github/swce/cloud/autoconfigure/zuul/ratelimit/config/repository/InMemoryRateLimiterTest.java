@@ -0,0 +1,184 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitAlgorithm;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryRateLimiterTest extends BaseRateLimiterTest {
+
+    private InMemoryRateLimiter inMemoryRateLimiter;
+
+    @Before
+    public void setUp() {
+        inMemoryRateLimiter = new InMemoryRateLimiter(10, 60);
+        target = inMemoryRateLimiter;
+    }
+
+    @After
+    public void tearDown() {
+        inMemoryRateLimiter.destroy();
+    }
+
+    @Test
+    public void testConsumeExceeded() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(0L);
+        assertThat(rate.getReset()).isPositive();
+
+        rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(-1L);
+    }
+
+    @Test
+    public void testConsumeAfterExpiration() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setRefreshInterval(1L);
+
+        target.consume(policy, "key", null);
+        TimeUnit.MILLISECONDS.sleep(1100);
+
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testRemoveExpired() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setRefreshInterval(1L);
+
+        target.consume(policy, "key", null);
+        assertThat(inMemoryRateLimiter.size()).isEqualTo(1);
+        TimeUnit.MILLISECONDS.sleep(1100);
+
+        inMemoryRateLimiter.removeExpired();
+        assertThat(inMemoryRateLimiter.size()).isZero();
+    }
+
+    @Test
+    public void testMaxKeys() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+
+        for (int i = 0; i < 100; i++) {
+            target.consume(policy, "key" + i, null);
+        }
+        long deadline = System.currentTimeMillis() + 1000;
+        while (inMemoryRateLimiter.size() > 10 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(inMemoryRateLimiter.size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    public void testEvictClosestToReset() {
+        Policy first = new Policy();
+        first.setLimit(1L);
+        first.setRefreshInterval(1L);
+        Policy others = new Policy();
+        others.setLimit(1L);
+
+        target.consume(first, "first", null);
+        for (int i = 0; i < 9; i++) {
+            target.consume(others, "key" + i, null);
+        }
+        inMemoryRateLimiter.evict();
+
+        assertThat(inMemoryRateLimiter.size()).isEqualTo(9);
+        assertThat(target.consume(first, "first", null).getRemaining()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testSlidingWindowWeightsPreviousWindow() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setRefreshInterval(1L);
+        policy.setAlgorithm(RateLimitAlgorithm.SLIDING_WINDOW);
+
+        for (int i = 0; i < 10; i++) {
+            target.consume(policy, "key", null);
+        }
+        assertThat(target.consume(policy, "key", null).getRemaining()).isEqualTo(-1L);
+        TimeUnit.MILLISECONDS.sleep(1050);
+
+        int admitted = 0;
+        while (target.consume(policy, "key", null).getRemaining() >= 0) {
+            admitted++;
+        }
+        assertThat(admitted).isBetween(1, 3);
+    }
+
+    @Test
+    public void testSlidingWindowRetainsPreviousWindow() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setRefreshInterval(1L);
+        policy.setAlgorithm(RateLimitAlgorithm.SLIDING_WINDOW);
+
+        target.consume(policy, "key", null);
+        TimeUnit.MILLISECONDS.sleep(1100);
+
+        inMemoryRateLimiter.removeExpired();
+        assertThat(inMemoryRateLimiter.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGcraSpacesRequests() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setRefreshInterval(1L);
+        policy.setAlgorithm(RateLimitAlgorithm.GCRA);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(target.consume(policy, "key", null).getRemaining()).isEqualTo(9L - i);
+        }
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(-1L);
+        assertThat(rate.getReset()).isBetween(900L, 1000L);
+        TimeUnit.MILLISECONDS.sleep(250);
+
+        int admitted = 0;
+        while (target.consume(policy, "key", null).getRemaining() >= 0) {
+            admitted++;
+        }
+        assertThat(admitted).isBetween(2, 3);
+    }
+
+    @Test
+    public void testGcraQuotaCountsAllUsage() {
+        Policy policy = new Policy();
+        policy.setQuota(1L);
+        policy.setRefreshInterval(1L);
+        policy.setAlgorithm(RateLimitAlgorithm.GCRA);
+
+        assertThat(target.consume(policy, "key", 800L).getRemainingQuota()).isEqualTo(200L);
+        assertThat(target.consume(policy, "key", 800L).getRemainingQuota()).isEqualTo(-1L);
+        assertThat(target.consume(policy, "key", 0L).getReset()).isGreaterThan(1000L);
+    }
+
+    @Test
+    public void testGcraRemovedOnceDrained() throws InterruptedException {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setRefreshInterval(1L);
+        policy.setAlgorithm(RateLimitAlgorithm.GCRA);
+
+        target.consume(policy, "key", null);
+        inMemoryRateLimiter.removeExpired();
+        assertThat(inMemoryRateLimiter.size()).isEqualTo(1);
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        inMemoryRateLimiter.removeExpired();
+        assertThat(inMemoryRateLimiter.size()).isZero();
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.verify;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+public class JdbcRateLimiterTest extends BaseRateLimiterTest {
+
+    private static final String SCHEMA = "META-INF/scripts/ratelimit-jdbc-schema.sql";
+
+    @Mock
+    private RateLimiterErrorHandler rateLimiterErrorHandler;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.H2)
+            .addScript(SCHEMA)
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        target = new JdbcRateLimiter(rateLimiterErrorHandler, jdbcTemplate, "rate_limit_counter", 60_000L);
+    }
+
+    @After
+    public void tearDown() {
+        ((JdbcRateLimiter) target).destroy();
+        database.shutdown();
+    }
+
+    private Policy policy() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setRefreshInterval(60L);
+        return policy;
+    }
+
+    private long windowStart() {
+        long now = System.currentTimeMillis();
+        return now - now % 60_000L;
+    }
+
+    private Map<String, Object> row(String key) {
+        return jdbcTemplate.queryForMap("SELECT window_start, used FROM rate_limit_counter WHERE counter_key = ?", key);
+    }
+
+    @Test
+    public void testFlushWritesDeltas() {
+        Policy policy = policy();
+        for (int i = 0; i < 3; i++) {
+            target.consume(policy, "key", null);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_counter", Long.class)).isZero();
+
+        ((JdbcRateLimiter) target).flush();
+        assertThat(row("key")).containsEntry("USED", 3L);
+
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", null);
+        ((JdbcRateLimiter) target).flush();
+
+        assertThat(rate.getRemaining()).isEqualTo(5L);
+        assertThat(row("key")).containsEntry("USED", 5L);
+    }
+
+    @Test
+    public void testConsumeLoadsStoredCounter() {
+        jdbcTemplate.update("INSERT INTO rate_limit_counter VALUES (?, ?, ?)", "key", windowStart(), 8L);
+
+        Rate rate = target.consume(policy(), "key", null);
+        ((JdbcRateLimiter) target).flush();
+
+        assertThat(rate.getRemaining()).isEqualTo(1L);
+        assertThat(row("key")).containsEntry("USED", 9L);
+    }
+
+    @Test
+    public void testFlushRestartsEndedWindow() {
+        jdbcTemplate.update("INSERT INTO rate_limit_counter VALUES (?, ?, ?)", "key", 0L, 100L);
+
+        Rate rate = target.consume(policy(), "key", null);
+        ((JdbcRateLimiter) target).flush();
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        assertThat(row("key")).containsEntry("WINDOW_START", windowStart()).containsEntry("USED", 1L);
+    }
+
+    @Test
+    public void testFlushManyKeys() {
+        Policy policy = policy();
+        for (int i = 0; i < 1200; i++) {
+            target.consume(policy, "key" + i, null);
+        }
+        ((JdbcRateLimiter) target).flush();
+
+        List<Long> used = jdbcTemplate.queryForList("SELECT used FROM rate_limit_counter", Long.class);
+        assertThat(used).hasSize(1200).containsOnly(1L);
+    }
+
+    @Test
+    public void testFlushErrorKeepsDeltas() {
+        Policy policy = policy();
+        target.consume(policy, "key", null);
+        target.consume(policy, "key", null);
+        jdbcTemplate.execute("ALTER TABLE rate_limit_counter RENAME TO rate_limit_counter_old");
+
+        ((JdbcRateLimiter) target).flush();
+        verify(rateLimiterErrorHandler).handleError(matches(".*rate limit counters.*"), any());
+
+        jdbcTemplate.execute("ALTER TABLE rate_limit_counter_old RENAME TO rate_limit_counter");
+        ((JdbcRateLimiter) target).flush();
+        assertThat(row("key")).containsEntry("USED", 2L);
+    }
+
+    @Test
+    public void testFetchError() {
+        jdbcTemplate.execute("DROP TABLE rate_limit_counter");
+
+        Rate rate = target.consume(policy(), "key", null);
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        verify(rateLimiterErrorHandler).handleFetchError(matches("key"), any());
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.HashingRateLimitKeyEncoder;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeyEncodingRateLimiterTest extends BaseRateLimiterTest {
+
+    private InMemoryRateLimiter delegate;
+    private HashingRateLimitKeyEncoder keyEncoder = new HashingRateLimitKeyEncoder("app");
+
+    @Before
+    public void setUp() {
+        delegate = spy(new InMemoryRateLimiter(100, 60));
+        target = new KeyEncodingRateLimiter(delegate, keyEncoder);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.destroy();
+    }
+
+    @Test
+    public void testConsumeEncodedKey() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        String key = "app:serviceA:10.1.2.3:user@example.com:/api/v1/orders";
+
+        Rate rate = target.consume(policy, key, null);
+
+        assertThat(rate.getKey()).isEqualTo(key);
+        verify(delegate).consume(policy, keyEncoder.encode(key), null);
+        verify(delegate, never()).consume(eq(policy), eq(key), any());
+    }
+
+    @Test
+    public void testConsumeAllEncodedKeys() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(policy, policy), Arrays.asList("app:first", "app:second"),
+            null);
+
+        assertThat(rates).extracting(Rate::getKey).containsExactly("app:first", "app:second");
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, 9L);
+        verify(delegate, never()).consume(any(), eq("app:first"), any());
+        verify(delegate).consume(policy, keyEncoder.encode("app:second"), null);
+    }
+
+    @Test
+    public void testAcquireEncodedKey() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+
+        Rate rate = target.acquire(policy, "app:key", 3L);
+
+        assertThat(rate.getKey()).isEqualTo("app:key");
+        verify(delegate).acquire(policy, keyEncoder.encode("app:key"), 3L);
+        verify(delegate, never()).acquire(any(), eq("app:key"), any(Long.class));
+        verify(delegate, never()).consume(any(), anyString(), any());
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LeasingRateLimiterTest extends BaseRateLimiterTest {
+
+    private InMemoryRateLimiter delegate;
+
+    @Before
+    public void setUp() {
+        delegate = spy(new InMemoryRateLimiter(100, 60));
+        target = new LeasingRateLimiter(delegate, 0.05, 1000, 2);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.destroy();
+    }
+
+    @Test
+    public void testConsumeFromLease() {
+        Policy policy = new Policy();
+        policy.setLimit(1000L);
+
+        int admitted = 0;
+        for (int i = 0; i < 1100; i++) {
+            Rate rate = target.consume(policy, "key", null);
+            if (rate.getRemaining() >= 0) {
+                admitted++;
+            }
+        }
+
+        assertThat(admitted).isEqualTo(1000);
+        verify(delegate, atMost(200)).acquire(eq(policy), eq("key"), anyLong());
+        verify(delegate, never()).consume(eq(policy), anyString(), any());
+    }
+
+    @Test
+    public void testPartialLeaseIsNotCounted() {
+        target = new LeasingRateLimiter(delegate, 0.25, 1000, 2);
+        Policy policy = new Policy();
+        policy.setLimit(20L);
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(target.consume(policy, "key", null).getRemaining()).isGreaterThanOrEqualTo(0L);
+        }
+        // another node takes most of what is left, the next lease of 5 only partially fits
+        assertThat(delegate.acquire(policy, "key", 12L).getRemaining()).isEqualTo(2L);
+
+        assertThat(target.consume(policy, "key", null).getRemaining()).isGreaterThanOrEqualTo(0L);
+        assertThat(delegate.acquire(policy, "key", 0L).getRemaining()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testExceededKeySharesRenewal() throws Exception {
+        AtomicInteger acquired = new AtomicInteger();
+        RateLimiter slow = new RateLimiter() {
+            @Override
+            public Rate consume(Policy policy, String key, Long requestTime) {
+                return delegate.consume(policy, key, requestTime);
+            }
+
+            @Override
+            public boolean supportsAcquire() {
+                return true;
+            }
+
+            @Override
+            public Rate acquire(Policy policy, String key, long permits) {
+                acquired.incrementAndGet();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return delegate.acquire(policy, key, permits);
+            }
+        };
+        target = new LeasingRateLimiter(slow, 0.05, 1000, 2);
+        Policy policy = new Policy();
+        policy.setLimit(1000L);
+        delegate.acquire(policy, "key", 1000L);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (target.consume(policy, "key", null).getRemaining() < 0) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(rejected.get()).isEqualTo(threads);
+        assertThat(acquired.get()).isLessThan(threads);
+    }
+
+    @Test
+    public void testConsumeWithQuotaIsNotLeased() {
+        Policy policy = new Policy();
+        policy.setLimit(1000L);
+        policy.setQuota(1L);
+
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(999L);
+        verify(delegate).consume(policy, "key", null);
+        verify(delegate, never()).acquire(any(), anyString(), anyLong());
+    }
+
+    @Test
+    public void testConsumeWithoutAcquireIsNotLeased() {
+        RateLimiter backend = (policy, key, requestTime) -> delegate.consume(policy, key, requestTime);
+        target = new LeasingRateLimiter(backend, 0.05, 1000, 2);
+        Policy policy = new Policy();
+        policy.setLimit(1000L);
+
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(999L);
+        assertThat(((LeasingRateLimiter) target).size()).isZero();
+        verify(delegate, never()).acquire(any(), anyString(), anyLong());
+    }
+
+    @Test
+    public void testMaxKeys() {
+        Policy policy = new Policy();
+        policy.setLimit(1000L);
+
+        for (int i = 0; i < 5; i++) {
+            Rate rate = target.consume(policy, "key" + i, null);
+            assertThat(rate.getRemaining()).isEqualTo(999L);
+        }
+        assertThat(((LeasingRateLimiter) target).size()).isEqualTo(2);
+        verify(delegate).consume(policy, "key4", null);
+    }
+
+    @Test
+    public void testConsumeWithoutAcquireSupport() {
+        RateLimiter rateLimiter = (policy, key, requestTime) -> new Rate(key, 5L, null, 0L, null);
+        target = new LeasingRateLimiter(rateLimiter, 0.05, 1000, 2);
+        Policy policy = new Policy();
+        policy.setLimit(1000L);
+
+        assertThat(target.consume(policy, "key", null).getRemaining()).isEqualTo(5L);
+        assertThat(target.consume(policy, "key", null).getRemaining()).isEqualTo(5L);
+    }
+}
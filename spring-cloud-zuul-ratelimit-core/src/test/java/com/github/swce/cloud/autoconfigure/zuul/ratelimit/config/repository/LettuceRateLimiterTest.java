@@ -0,0 +1,227 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.ScriptOutputType;
+import com.lambdaworks.redis.cluster.api.async.RedisClusterAsyncCommands;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+@SuppressWarnings("unchecked")
+public class LettuceRateLimiterTest extends BaseRateLimiterTest {
+
+    @Mock
+    private RateLimiterErrorHandler rateLimiterErrorHandler;
+    @Mock
+    private LettuceConnectionFactory connectionFactory;
+    @Mock
+    private LettuceConnection connection;
+    @Mock
+    private RedisClusterAsyncCommands<byte[], byte[]> commands;
+
+    private final Map<String, Long> counters = Maps.newHashMap();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connectionFactory.getTimeout()).thenReturn(1000L);
+        when(connection.getNativeConnection()).thenReturn(commands);
+        when(commands.<List<Long>>evalsha(anyString(), any(ScriptOutputType.class), any(byte[][].class), any()))
+            .thenAnswer(invocation -> new TestFuture<>(CompletableFuture.completedFuture(evaluate(invocation))));
+        target = new LettuceRateLimiter(rateLimiterErrorHandler, connectionFactory);
+    }
+
+    private List<Long> evaluate(InvocationOnMock invocation) {
+        byte[][] keys = invocation.getArgument(2);
+        Object[] arguments = invocation.getArguments();
+        Object[] args = Arrays.copyOfRange(arguments, 3, arguments.length);
+        List<Long> result = Lists.newArrayList();
+        for (int i = 0; i < keys.length; i++) {
+            String key = new String(keys[i], StandardCharsets.UTF_8);
+            long usage = Long.parseLong(arg(args, 5 * i + 1));
+            long window = Long.parseLong(arg(args, 5 * i + 2));
+            long limit = Long.parseLong(arg(args, 5 * i + 3));
+            long current = counters.merge(key, usage, Long::sum);
+            if (current > limit && "5".equals(arg(args, 5 * i + 5))) {
+                counters.put(key, current - usage);
+            }
+            result.add(current);
+            result.add(window * 1000);
+            if (current > limit && "1".equals(arg(args, 5 * i + 4))) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static String arg(Object[] args, int index) {
+        return new String((byte[]) args[index], StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testConsumeAllAsyncCompletesWhenRedisAnswers() {
+        CompletableFuture<List<Long>> answer = new CompletableFuture<>();
+        when(commands.<List<Long>>evalsha(anyString(), any(ScriptOutputType.class), any(byte[][].class), any()))
+            .thenReturn(new TestFuture<>(answer));
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+
+        CompletionStage<List<Rate>> rates = target.consumeAllAsync(Arrays.asList(policy), Arrays.asList("key"), null);
+
+        assertThat(rates.toCompletableFuture().isDone()).isFalse();
+        answer.complete(Arrays.asList(3L, 5000L));
+        assertThat(rates.toCompletableFuture().join()).extracting(Rate::getRemaining).containsExactly(7L);
+        assertThat(rates.toCompletableFuture().join()).extracting(Rate::getReset).containsExactly(5000L);
+    }
+
+    @Test
+    public void testConsumeAllClusterCallPerSlot() {
+        target = new LettuceRateLimiter(rateLimiterErrorHandler, connectionFactory, true);
+        Policy exceeded = new Policy();
+        exceeded.setLimit(1L);
+        exceeded.setQuota(1L);
+        Policy skipped = new Policy();
+        skipped.setLimit(10L);
+        target.consume(exceeded, "exceeded", null);
+
+        List<Rate> rates = target.consumeAllAsync(Arrays.asList(skipped, exceeded, skipped),
+            Arrays.asList("first", "exceeded", "skipped"), null).toCompletableFuture().join();
+
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, -1L);
+        assertThat(counters).containsOnlyKeys("{first}", "{exceeded}", "{exceeded}-quota");
+        verify(commands, times(3)).evalsha(anyString(), any(ScriptOutputType.class), any(byte[][].class),
+            ArgumentMatchers.<byte[]>any());
+    }
+
+    @Test
+    public void testEvalWhenScriptNotLoaded() {
+        CompletableFuture<List<Long>> noScript = new CompletableFuture<>();
+        noScript.completeExceptionally(new RedisCommandExecutionException("NOSCRIPT No matching script"));
+        when(commands.<List<Long>>evalsha(anyString(), any(ScriptOutputType.class), any(byte[][].class), any()))
+            .thenReturn(new TestFuture<>(noScript));
+        when(commands.<List<Long>>eval(anyString(), any(ScriptOutputType.class), any(byte[][].class), any()))
+            .thenAnswer(invocation -> new TestFuture<>(CompletableFuture.completedFuture(evaluate(invocation))));
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        verify(rateLimiterErrorHandler, never()).handleError(anyString(), any());
+    }
+
+    @Test
+    public void testConsumeRedisError() {
+        CompletableFuture<List<Long>> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new RedisCommandExecutionException("ERR"));
+        when(commands.<List<Long>>evalsha(anyString(), any(ScriptOutputType.class), any(byte[][].class), any()))
+            .thenReturn(new TestFuture<>(failure));
+        Policy policy = new Policy();
+        policy.setLimit(100L);
+        policy.setQuota(50L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        verify(rateLimiterErrorHandler).handleError(matches(".* key, .*"), any(RedisCommandExecutionException.class));
+        assertThat(rate.getRemaining()).isEqualTo(100L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(50_000L);
+    }
+
+    @Test
+    public void testConsumeTimeout() {
+        when(connectionFactory.getTimeout()).thenReturn(10L);
+        when(commands.<List<Long>>evalsha(anyString(), any(ScriptOutputType.class), any(byte[][].class), any()))
+            .thenReturn(new TestFuture<>(new CompletableFuture<>()));
+        Policy policy = new Policy();
+        policy.setLimit(100L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        verify(rateLimiterErrorHandler).handleError(matches(".* key, .*"), any(TimeoutException.class));
+        assertThat(rate.getRemaining()).isEqualTo(100L);
+    }
+
+    @Test
+    public void testConsumeConnectionError() {
+        when(connectionFactory.getConnection()).thenThrow(new IllegalStateException());
+        Policy policy = new Policy();
+        policy.setLimit(100L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        verify(rateLimiterErrorHandler).handleError(matches(".* key, .*"), any(IllegalStateException.class));
+        assertThat(rate.getRemaining()).isEqualTo(100L);
+    }
+
+    @Test
+    public void testPreloadScript() {
+        when(commands.scriptLoad(any(byte[].class))).thenReturn(new TestFuture<>(CompletableFuture.completedFuture("sha")));
+
+        ((LettuceRateLimiter) target).afterPropertiesSet();
+
+        verify(commands).scriptLoad(any(byte[].class));
+        verify(rateLimiterErrorHandler, never()).handleError(anyString(), any());
+    }
+
+    @Test
+    public void testDestroyClosesConnection() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        target.consume(policy, "key", null);
+
+        ((LettuceRateLimiter) target).destroy();
+
+        verify(connection).close();
+    }
+
+    private static final class TestFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+
+        private TestFuture(CompletableFuture<T> source) {
+            source.whenComplete((value, error) -> {
+                if (error != null) {
+                    completeExceptionally(error);
+                } else {
+                    complete(value);
+                }
+            });
+        }
+
+        @Override
+        public String getError() {
+            return null;
+        }
+
+        @Override
+        public boolean await(long timeout, TimeUnit unit) {
+            return isDone();
+        }
+    }
+}
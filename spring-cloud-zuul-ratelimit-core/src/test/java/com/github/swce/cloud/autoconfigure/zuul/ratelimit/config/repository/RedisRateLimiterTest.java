@@ -1,5 +1,7 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -10,6 +12,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.google.common.collect.Maps;
 import java.util.Map;
@@ -56,6 +59,23 @@ public class RedisRateLimiterTest extends BaseRateLimiterTest {
         target = new RedisRateLimiter(rateLimiterErrorHandler, redisTemplate);
     }
 
+    @Test
+    public void testConsumeClusterHashTags() {
+        ValueOperations ops = mock(ValueOperations.class);
+        doReturn(ops).when(redisTemplate).opsForValue();
+        when(ops.increment(anyString(), anyLong())).thenReturn(1L);
+        target = new RedisRateLimiter(rateLimiterErrorHandler, redisTemplate, true);
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        verify(ops).increment("{key}", 1L);
+        verify(ops).increment("{key}-quota", 0L);
+        assertThat(rate.getKey()).isEqualTo("key");
+    }
+
     @Test
     public void testConsumeRemainingLimitException() {
         ValueOperations ops = mock(ValueOperations.class);
@@ -103,4 +123,19 @@ public class RedisRateLimiterTest extends BaseRateLimiterTest {
         target.consume(policy, "key", 0L);
         verify(rateLimiterErrorHandler).handleError(matches(".* key, .*"), any());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConsumeExceededResetFromExpire() {
+        when(redisTemplate.getExpire("key", MILLISECONDS)).thenReturn(1500L);
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setRefreshInterval(2L);
+
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getReset()).isEqualTo(2000L);
+
+        rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(-1L);
+        assertThat(rate.getReset()).isEqualTo(1500L);
+    }
+}
@@ -0,0 +1,250 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitAlgorithm;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+@SuppressWarnings("unchecked")
+public class RedisScriptRateLimiterTest extends BaseRateLimiterTest {
+
+    @Mock
+    private RateLimiterErrorHandler rateLimiterErrorHandler;
+    @Mock
+    private RedisTemplate redisTemplate;
+
+    private final Map<String, Long> counters = Maps.newHashMap();
+    private final Map<String, Long> ttls = Maps.newHashMap();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            Object[] arguments = invocation.getArguments();
+            Object[] args = Arrays.copyOfRange(arguments, 3, arguments.length);
+            List<Long> result = Lists.newArrayList();
+            boolean exceeded = false;
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                long usage = Long.parseLong((String) args[5 * i]);
+                long window = Long.parseLong((String) args[5 * i + 1]);
+                long limit = Long.parseLong((String) args[5 * i + 2]);
+                long current = counters.merge(key, usage, Long::sum);
+                if (current > limit && "15".contains((String) args[5 * i + 4])) {
+                    counters.put(key, current - usage);
+                }
+                result.add(current);
+                result.add(ttls.computeIfAbsent(key, k -> window * 1000));
+                exceeded |= current > limit;
+                if (exceeded && "1".equals(args[5 * i + 3])) {
+                    break;
+                }
+            }
+            return result;
+        });
+        target = new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate);
+    }
+
+    @Test
+    public void testConsumeSingleCall() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(5L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), any());
+        assertThat(counters).containsOnlyKeys("key", "key-quota");
+        assertThat(rate.getReset()).isEqualTo(5000L);
+    }
+
+    @Test
+    public void testConsumeExceeded() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setRefreshInterval(5L);
+
+        Rate rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(0L);
+        rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(-1L);
+    }
+
+    @Test
+    public void testConsumeScriptException() {
+        doThrow(new RuntimeException()).when(redisTemplate).execute(any(RedisScript.class), anyList(), any());
+        Policy policy = new Policy();
+        policy.setLimit(100L);
+        policy.setQuota(50L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        verify(rateLimiterErrorHandler).handleError(matches(".* key, .*"), any());
+        assertThat(rate.getRemaining()).isEqualTo(100L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(50_000L);
+    }
+
+    @Test
+    public void testPreloadScript() {
+        ((RedisScriptRateLimiter) target).afterPropertiesSet();
+        verify(redisTemplate).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    public void testPreloadScriptException() {
+        doThrow(new RuntimeException()).when(redisTemplate).execute(any(RedisCallback.class));
+        ((RedisScriptRateLimiter) target).afterPropertiesSet();
+        verify(rateLimiterErrorHandler).handleError(matches(".*preloading.*"), any());
+    }
+
+    @Test
+    public void testConsumeAllSingleCall() {
+        Policy first = new Policy();
+        first.setLimit(10L);
+        first.setQuota(1L);
+        Policy second = new Policy();
+        second.setLimit(10L);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(first, second), Arrays.asList("first", "second"), null);
+
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), any());
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, 9L);
+        assertThat(counters).containsOnlyKeys("first", "first-quota", "second");
+    }
+
+    @Test
+    public void testConsumeClusterHashTags() {
+        target = new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate, true);
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+
+        target.consume(policy, "key", null);
+
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), any());
+        assertThat(counters).containsOnlyKeys("{key}", "{key}-quota");
+    }
+
+    @Test
+    public void testConsumeAllClusterCallPerSlot() {
+        target = new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate, true);
+        Policy first = new Policy();
+        first.setLimit(10L);
+        first.setQuota(1L);
+        Policy second = new Policy();
+        second.setLimit(10L);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(first, second), Arrays.asList("first", "second"), null);
+
+        ArgumentCaptor<List> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), keys.capture(), any());
+        assertThat(keys.getAllValues()).containsExactly(Arrays.asList("{first}", "{first}-quota"),
+            Collections.singletonList("{second}"));
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, 9L);
+    }
+
+    @Test
+    public void testConsumeAllClusterRouteSharesSlot() {
+        target = new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate, true);
+        Policy first = new Policy();
+        first.setLimit(10L);
+        first.setQuota(1L);
+        Policy second = new Policy();
+        second.setLimit(10L);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(first, second),
+            Arrays.asList("app:route:10.1.2.3", "app:route:user:/api"), null);
+
+        ArgumentCaptor<List> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(any(RedisScript.class), keys.capture(), any());
+        assertThat(keys.getValue()).containsExactly("{app:route}:10.1.2.3", "{app:route}:10.1.2.3-quota",
+            "{app:route}:user:/api");
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(9L, 9L);
+    }
+
+    @Test
+    public void testConsumeAllClusterStopsAfterExceededSlot() {
+        target = new RedisScriptRateLimiter(rateLimiterErrorHandler, redisTemplate, true);
+        Policy exceeded = new Policy();
+        exceeded.setLimit(1L);
+        Policy skipped = new Policy();
+        skipped.setLimit(10L);
+        target.consume(exceeded, "exceeded", null);
+
+        List<Rate> rates = target.consumeAll(Arrays.asList(exceeded, skipped), Arrays.asList("exceeded", "skipped"),
+            null);
+
+        assertThat(rates).extracting(Rate::getRemaining).containsExactly(-1L);
+        assertThat(counters).doesNotContainKey("{skipped}");
+    }
+
+    @Test
+    public void testConsumeSlidingWindow() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(5L);
+        policy.setAlgorithm(RateLimitAlgorithm.SLIDING_WINDOW);
+
+        target.consume(policy, "key", null);
+
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), args.capture());
+        assertThat(args.getAllValues()).hasSize(11);
+        assertThat(args.getAllValues().subList(1, 11))
+            .containsExactly("1", "5", "10", "0", "1", "0", "5", "1000", "1", "2");
+    }
+
+    @Test
+    public void testSlidingWindowOnlyCountsAdmitted() {
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        policy.setAlgorithm(RateLimitAlgorithm.SLIDING_WINDOW);
+
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", null);
+
+        assertThat(rate.getRemaining()).isEqualTo(-1L);
+        assertThat(counters).containsEntry("key", 1L);
+    }
+
+    @Test
+    public void testConsumeGcra() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(5L);
+        policy.setAlgorithm(RateLimitAlgorithm.GCRA);
+
+        target.consume(policy, "key", null);
+
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), args.capture());
+        assertThat(args.getAllValues().subList(1, 11))
+            .containsExactly("1", "5", "10", "0", "3", "0", "5", "1000", "1", "4");
+    }
+}
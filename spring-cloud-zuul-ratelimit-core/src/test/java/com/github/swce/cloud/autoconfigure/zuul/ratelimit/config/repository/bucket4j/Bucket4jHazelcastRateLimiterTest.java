@@ -1,17 +1,25 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.BaseRateLimiterTest;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import io.github.bucket4j.grid.GridBucketState;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
 import org.mockito.MockitoAnnotations;
 
 public class Bucket4jHazelcastRateLimiterTest extends BaseRateLimiterTest {
 
     private static HazelcastInstance hazelcastInstance;
+    private IMap<String, GridBucketState> rateLimit;
 
     @BeforeClass
     public static void setUpClass() {
@@ -21,12 +29,29 @@ public class Bucket4jHazelcastRateLimiterTest extends BaseRateLimiterTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        target = new Bucket4jHazelcastRateLimiter(hazelcastInstance.getMap("rateLimit"));
+        rateLimit = hazelcastInstance.getMap("rateLimit");
+        target = new Bucket4jHazelcastRateLimiter(rateLimit);
+    }
+
+    @Test
+    public void testConsumeCombinedEntry() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(2L);
+
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", 1200L);
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(-1L);
+        assertThat(rateLimit.containsKey("key-combined")).isTrue();
+        assertThat(rateLimit.containsKey("key")).isFalse();
     }
 
     @After
     public void tearDown() {
-        hazelcastInstance.getMap("rateLimit").destroy();
+        rateLimit.destroy();
     }
 
     @AfterClass
@@ -1,17 +1,25 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.BaseRateLimiterTest;
+import io.github.bucket4j.grid.GridBucketState;
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
 import org.mockito.MockitoAnnotations;
 
 public class Bucket4jIgniteRateLimiterTest extends BaseRateLimiterTest {
 
     private static Ignite ignite;
+    private IgniteCache<String, GridBucketState> cache;
 
     @BeforeClass
     public static void setUpClass() {
@@ -21,7 +29,24 @@ public class Bucket4jIgniteRateLimiterTest extends BaseRateLimiterTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        target = new Bucket4jIgniteRateLimiter(ignite.createCache("rateLimit"));
+        cache = ignite.createCache("rateLimit");
+        target = new Bucket4jIgniteRateLimiter(cache);
+    }
+
+    @Test
+    public void testConsumeCombinedEntry() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(2L);
+
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", 1200L);
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(-1L);
+        assertThat(cache.containsKey("key-combined")).isTrue();
+        assertThat(cache.containsKey("key")).isFalse();
     }
 
     @After
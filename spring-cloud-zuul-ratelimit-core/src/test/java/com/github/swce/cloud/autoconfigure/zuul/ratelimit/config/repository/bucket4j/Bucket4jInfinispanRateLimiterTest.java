@@ -1,5 +1,9 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.BaseRateLimiterTest;
 import io.github.bucket4j.grid.GridBucketState;
 import org.infinispan.AdvancedCache;
@@ -10,21 +14,40 @@ import org.infinispan.functional.impl.ReadWriteMapImpl;
 import org.infinispan.manager.DefaultCacheManager;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
 import org.mockito.MockitoAnnotations;
 
 public class Bucket4jInfinispanRateLimiterTest extends BaseRateLimiterTest {
 
+    private AdvancedCache<String, GridBucketState> cache;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         DefaultCacheManager cacheManager = new DefaultCacheManager();
         cacheManager.defineConfiguration("rateLimit", new ConfigurationBuilder().build());
-        AdvancedCache<String, GridBucketState> cache = cacheManager.<String, GridBucketState>getCache("rateLimit").getAdvancedCache();
+        cache = cacheManager.<String, GridBucketState>getCache("rateLimit").getAdvancedCache();
         FunctionalMapImpl<String, GridBucketState> functionalMap = FunctionalMapImpl.create(cache);
         FunctionalMap.ReadWriteMap<String, GridBucketState> readWriteMap = ReadWriteMapImpl.create(functionalMap);
         target = new Bucket4jInfinispanRateLimiter(readWriteMap);
     }
 
+    @Test
+    public void testConsumeCombinedEntry() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(2L);
+
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", 1200L);
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(-1L);
+        assertThat(cache.containsKey("key-combined")).isTrue();
+        assertThat(cache.containsKey("key")).isFalse();
+    }
+
     @After
     public void tearDown() {
         DefaultCacheManager cacheManager = new DefaultCacheManager();
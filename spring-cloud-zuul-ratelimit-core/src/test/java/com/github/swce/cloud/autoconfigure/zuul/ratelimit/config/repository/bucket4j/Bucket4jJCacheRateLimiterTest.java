@@ -1,17 +1,33 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.bucket4j;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.BaseRateLimiterTest;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import io.github.bucket4j.grid.GridBucketState;
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 public class Bucket4jJCacheRateLimiterTest extends BaseRateLimiterTest {
 
     private static Ignite ignite;
+    private IgniteCache<String, GridBucketState> cache;
+    @Mock
+    private RateLimiterErrorHandler rateLimiterErrorHandler;
 
     @BeforeClass
     public static void setUpClass() {
@@ -21,7 +37,58 @@ public class Bucket4jJCacheRateLimiterTest extends BaseRateLimiterTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        target = new Bucket4jJCacheRateLimiter(ignite.createCache("rateLimit"));
+        cache = ignite.createCache("rateLimit");
+        target = new Bucket4jJCacheRateLimiter(rateLimiterErrorHandler, cache);
+    }
+
+    @Test
+    public void testBucketConfigurationCached() {
+        Bucket4jJCacheRateLimiter rateLimiter = (Bucket4jJCacheRateLimiter) target;
+
+        assertThat(rateLimiter.getBucketConfiguration(10L, 60L).get())
+            .isSameAs(rateLimiter.getBucketConfiguration(10L, 60L).get())
+            .isNotSameAs(rateLimiter.getBucketConfiguration(10L, 30L).get());
+    }
+
+    @Test
+    public void testConsumeCombinedEntry() {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(2L);
+
+        target.consume(policy, "key", null);
+        Rate rate = target.consume(policy, "key", 1200L);
+
+        assertThat(rate.getRemaining()).isEqualTo(9L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(-1L);
+        assertThat(cache.containsKey("key-combined")).isTrue();
+        assertThat(cache.containsKey("key")).isFalse();
+        assertThat(cache.containsKey("key" + RateLimiter.QUOTA_SUFFIX)).isFalse();
+
+        rate = target.consume(policy, "key", null);
+        assertThat(rate.getRemaining()).isEqualTo(8L);
+        assertThat(rate.getRemainingQuota()).isLessThan(1000L);
+    }
+
+    @Test
+    public void testConsumeCombinedEntryNotCreated() {
+        target = new Bucket4jJCacheRateLimiter(rateLimiterErrorHandler, cache) {
+            @Override
+            protected void putIfAbsent(String key, GridBucketState state) {
+            }
+        };
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.setQuota(1L);
+        policy.setRefreshInterval(2L);
+
+        Rate rate = target.consume(policy, "key", null);
+
+        assertThat(rate.getRemaining()).isEqualTo(10L);
+        assertThat(rate.getRemainingQuota()).isEqualTo(1000L);
+        assertThat(rate.getReset()).isEqualTo(2000L);
+        verify(rateLimiterErrorHandler).handleError(anyString(), any(IllegalStateException.class));
     }
 
     @After
@@ -0,0 +1,125 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.RATE_LIMIT_CONSUMPTION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.commons.TestRouteLocator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import javax.servlet.AsyncEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.UrlPathHelper;
+
+public class RateLimitAsyncFilterTest {
+
+    @Mock
+    private RateLimiter rateLimiter;
+    @Mock
+    private RateLimitKeyGenerator rateLimitKeyGenerator;
+    @Mock
+    private RateLimiterErrorHandler rateLimiterErrorHandler;
+
+    private RateLimitAsyncFilter target;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private MockFilterChain filterChain;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        properties.setDefaultPolicyList(Lists.newArrayList(policy));
+        Route route = new Route("servicea", "/test", "servicea", "/servicea", null, Collections.emptySet());
+        TestRouteLocator routeLocator = new TestRouteLocator(Collections.emptyList(), Lists.newArrayList(route));
+        RateLimitPreFilter preFilter = new RateLimitPreFilter(properties, routeLocator, new UrlPathHelper(),
+            rateLimiter, rateLimitKeyGenerator, new DefaultRateLimitUtils(properties));
+        target = new RateLimitAsyncFilter(preFilter, rateLimiterErrorHandler, 1000);
+        request = new MockHttpServletRequest("GET", "/servicea/test");
+        request.setAsyncSupported(true);
+        response = new MockHttpServletResponse();
+        filterChain = new MockFilterChain();
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+    }
+
+    @Test
+    public void testDispatchesOnceConsumed() throws Exception {
+        CompletableFuture<List<Rate>> rates = new CompletableFuture<>();
+        when(rateLimiter.consumeAllAsync(any(), any(), any())).thenReturn(rates);
+
+        target.doFilter(request, response, filterChain);
+
+        assertThat(request.isAsyncStarted()).isTrue();
+        assertThat(filterChain.getRequest()).isNull();
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        assertThat(asyncContext.getDispatchedPath()).isNull();
+
+        rates.complete(Lists.newArrayList(new Rate("generatedKey", 9L, null, 1000L, null)));
+
+        assertThat(asyncContext.getDispatchedPath()).isEqualTo("/servicea/test");
+        assertThat(request.getAttribute(RATE_LIMIT_CONSUMPTION)).isInstanceOf(RateLimitConsumption.class);
+    }
+
+    @Test
+    public void testContinuesWhenAlreadyConsumed() throws Exception {
+        when(rateLimiter.consumeAllAsync(any(), any(), any())).thenReturn(
+            CompletableFuture.completedFuture(Lists.newArrayList(new Rate("generatedKey", 9L, null, 1000L, null))));
+
+        target.doFilter(request, response, filterChain);
+
+        assertThat(request.isAsyncStarted()).isFalse();
+        assertThat(filterChain.getRequest()).isSameAs(request);
+        assertThat(request.getAttribute(RATE_LIMIT_CONSUMPTION)).isInstanceOf(RateLimitConsumption.class);
+    }
+
+    @Test
+    public void testContinuesWithoutAsyncSupport() throws Exception {
+        request.setAsyncSupported(false);
+
+        target.doFilter(request, response, filterChain);
+
+        assertThat(filterChain.getRequest()).isSameAs(request);
+        verify(rateLimiter, never()).consumeAllAsync(any(), any(), any());
+    }
+
+    @Test
+    public void testPolicyLimitsOnTimeout() throws Exception {
+        CompletableFuture<List<Rate>> rates = new CompletableFuture<>();
+        when(rateLimiter.consumeAllAsync(any(), any(), any())).thenReturn(rates);
+
+        target.doFilter(request, response, filterChain);
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        asyncContext.getListeners().get(0).onTimeout(new AsyncEvent(asyncContext));
+        rates.complete(Lists.newArrayList(new Rate("generatedKey", 9L, null, 1000L, null)));
+
+        assertThat(rates.join()).extracting(Rate::getRemaining).containsExactly(10L);
+        assertThat(rates.join()).extracting(Rate::getRemainingQuota).containsNull();
+        assertThat(asyncContext.getDispatchedPath()).isEqualTo("/servicea/test");
+        verify(rateLimiterErrorHandler).handleError(anyString(), any(TimeoutException.class));
+    }
+}
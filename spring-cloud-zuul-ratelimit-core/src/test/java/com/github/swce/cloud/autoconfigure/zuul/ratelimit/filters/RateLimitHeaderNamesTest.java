@@ -0,0 +1,37 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_LIMIT;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_QUOTA;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_REMAINING;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_REMAINING_QUOTA;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_RESET;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class RateLimitHeaderNamesTest {
+
+    @Test
+    public void testSanitizeMatchesRegexReplacement() {
+        String[] keys = {"", "_", "__", "___", "____", "a:b", "a::b", "a:::b", "key-prefix:serviceA:10.0.0.1:/path/x",
+            "rate-limit-application:myServiceId:anonymous:GET", "null_serviceA_10.0.0.100_anonymous_GET",
+            "ü:ß_§", ":leading", "trailing:", "A-Z.a-z.0-9"};
+
+        for (String key : keys) {
+            assertThat(RateLimitHeaderNames.sanitize(key))
+                .as(key)
+                .isEqualTo(key.replaceAll("[^A-Za-z0-9-.]", "_").replaceAll("__", "_"));
+        }
+    }
+
+    @Test
+    public void testHeaderNames() {
+        RateLimitHeaderNames names = new RateLimitHeaderNames("prefix:service:user");
+
+        assertThat(names.getLimit()).isEqualTo(HEADER_LIMIT + "prefix_service_user");
+        assertThat(names.getRemaining()).isEqualTo(HEADER_REMAINING + "prefix_service_user");
+        assertThat(names.getQuota()).isEqualTo(HEADER_QUOTA + "prefix_service_user");
+        assertThat(names.getRemainingQuota()).isEqualTo(HEADER_REMAINING_QUOTA + "prefix_service_user");
+        assertThat(names.getReset()).isEqualTo(HEADER_RESET + "prefix_service_user");
+    }
+}
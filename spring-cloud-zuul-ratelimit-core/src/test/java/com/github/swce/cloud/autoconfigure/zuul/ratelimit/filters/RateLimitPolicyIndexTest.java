@@ -0,0 +1,128 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class RateLimitPolicyIndexTest {
+
+    private RateLimitProperties properties;
+    private RateLimitPolicyIndex target;
+    private MockHttpServletRequest request;
+    private Route route;
+
+    @Before
+    public void setUp() {
+        properties = new RateLimitProperties();
+        target = new RateLimitPolicyIndex(properties, new DefaultRateLimitUtils(properties));
+        request = new MockHttpServletRequest();
+        request.setMethod("GET");
+        request.setRemoteAddr("10.0.0.1");
+        route = new Route("servicea", "/test/path", "servicea", "/servicea", null, Collections.emptySet());
+    }
+
+    private Policy policy(MatchType... types) {
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        policy.getType().addAll(Lists.newArrayList(types));
+        return policy;
+    }
+
+    @Test
+    public void testEvaluateIndexedMatchers() {
+        Policy user = policy(new MatchType(RateLimitType.USER, "anonymous"));
+        Policy otherUser = policy(new MatchType(RateLimitType.USER, "other"));
+        Policy origin = policy(new MatchType(RateLimitType.ORIGIN, "10.0.0.1"));
+        Policy method = policy(new MatchType(RateLimitType.HTTPMETHOD, "get"));
+        Policy url = policy(new MatchType(RateLimitType.URL, "/test"));
+        Policy otherUrl = policy(new MatchType(RateLimitType.URL, "/other"));
+        Policy unconditional = policy(new MatchType(RateLimitType.ORIGIN, null));
+        properties.getPolicyList().put("servicea",
+            Lists.newArrayList(user, otherUser, origin, method, url, otherUrl, unconditional));
+
+        RateLimitEvaluation evaluation = target.evaluate(request, route);
+
+        assertThat(evaluation.getPolicies()).containsExactly(user, origin, method, url, unconditional);
+        assertThat(evaluation.isBrokeOnMatch()).isFalse();
+        assertThat(evaluation.getRoute()).isSameAs(route);
+    }
+
+    @Test
+    public void testInvalidatePolicyChangedInPlace() {
+        Policy policy = policy(new MatchType(RateLimitType.USER, "other"));
+        properties.getPolicyList().put("servicea", Lists.newArrayList(policy));
+        assertThat(target.evaluate(request, route).getPolicies()).isEmpty();
+
+        policy.getType().get(0).setMatcher("anonymous");
+        target.invalidate();
+
+        assertThat(target.evaluate(request, route).getPolicies()).containsExactly(policy);
+    }
+
+    @Test
+    public void testEvaluateResidualMatchers() {
+        Policy matching = policy(new MatchType(RateLimitType.USER, "anonymous"),
+            new MatchType(RateLimitType.ORIGIN, "10.0.0.1"));
+        Policy nonMatching = policy(new MatchType(RateLimitType.USER, "anonymous"),
+            new MatchType(RateLimitType.ORIGIN, "10.0.0.2"));
+        properties.getPolicyList().put("servicea", Lists.newArrayList(nonMatching, matching));
+
+        assertThat(target.evaluate(request, route).getPolicies()).containsExactly(matching);
+    }
+
+    @Test
+    public void testEvaluateBreakOnMatch() {
+        Policy first = policy(new MatchType(RateLimitType.URL, "/test"));
+        first.setBreakOnMatch(true);
+        Policy second = policy();
+        Policy skipped = policy(new MatchType(RateLimitType.URL, "/other"));
+        skipped.setBreakOnMatch(true);
+        properties.getPolicyList().put("servicea", Lists.newArrayList(skipped, first, second));
+
+        RateLimitEvaluation evaluation = target.evaluate(request, route);
+
+        assertThat(evaluation.getPolicies()).containsExactly(first);
+        assertThat(evaluation.isBrokeOnMatch()).isTrue();
+    }
+
+    @Test
+    public void testEvaluateWithoutRoute() {
+        Policy url = policy(new MatchType(RateLimitType.URL, "/other"));
+        Policy user = policy(new MatchType(RateLimitType.USER, "other"));
+        properties.setDefaultPolicyList(Lists.newArrayList(url, user));
+
+        assertThat(target.evaluate(request, null).getPolicies()).containsExactly(url);
+    }
+
+    @Test
+    public void testEvaluateFallsBackToDefaultPolicies() {
+        Policy defaultPolicy = policy();
+        properties.setDefaultPolicyList(Lists.newArrayList(defaultPolicy));
+        properties.getPolicyList().put("serviceb", Lists.newArrayList(policy()));
+
+        assertThat(target.evaluate(request, route).getPolicies()).containsExactly(defaultPolicy);
+    }
+
+    @Test
+    public void testEvaluateRebuildsOnRefresh() {
+        Policy before = policy();
+        properties.setDefaultPolicyList(Lists.newArrayList(before));
+        assertThat(target.evaluate(request, route).getPolicies()).containsExactly(before);
+
+        Policy after = policy();
+        properties.setPolicyList(Maps.newHashMap(Collections.singletonMap("servicea", Lists.newArrayList(after))));
+
+        assertThat(target.evaluate(request, route).getPolicies()).containsExactly(after);
+    }
+}
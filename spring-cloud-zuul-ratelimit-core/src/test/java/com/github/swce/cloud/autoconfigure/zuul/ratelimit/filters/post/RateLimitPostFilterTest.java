@@ -1,11 +1,13 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.post;
 
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.RATE_LIMIT_EVALUATION;
 import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.REQUEST_START_TIME;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -14,6 +16,7 @@ import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitEvaluation;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitPostFilter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
 import com.google.common.collect.Lists;
@@ -120,4 +123,19 @@ public class RateLimitPostFilterTest {
         target.run();
         verify(rateLimiter).consume(eq(defaultPolicy), eq("generatedKey"), anyLong());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRunReusesPreFilterKeys() {
+        rateLimitProperties.setEnabled(true);
+        when(httpServletRequest.getAttribute(REQUEST_START_TIME)).thenReturn(System.currentTimeMillis());
+        Policy defaultPolicy = new Policy();
+        defaultPolicy.setQuota(2L);
+        RateLimitEvaluation evaluation = new RateLimitEvaluation(null, Lists.newArrayList(defaultPolicy), false);
+        evaluation.setKeys(Lists.newArrayList("preFilterKey"));
+        RequestContext.getCurrentContext().put(RATE_LIMIT_EVALUATION, evaluation);
+
+        target.run();
+        verify(rateLimiter).consume(eq(defaultPolicy), eq("preFilterKey"), anyLong());
+        verifyNoMoreInteractions(rateLimitKeyGenerator);
+    }
+}
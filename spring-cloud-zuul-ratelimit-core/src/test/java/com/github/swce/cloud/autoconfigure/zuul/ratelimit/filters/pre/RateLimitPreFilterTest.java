@@ -1,28 +1,63 @@
 package com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.pre;
 
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_STANDARD_LIMIT;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_STANDARD_REMAINING;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.HEADER_STANDARD_RESET;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.RATE_LIMIT_CONSUMPTION;
+import static com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitConstants.RATE_LIMIT_EVALUATION;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitKeyGenerator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitListener;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimitUtils;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitHeadersMode;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy.MatchType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitRejectionMode;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitType;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.DefaultRateLimiterErrorHandler;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitAsyncFilter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitEvaluation;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.RateLimitPreFilter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.filters.commons.TestRouteLocator;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker.HeavyHitter;
 import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.DefaultRateLimitUtils;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.support.RateLimitExceededException;
 import com.google.common.collect.Lists;
 import com.netflix.zuul.context.RequestContext;
+import com.netflix.zuul.monitoring.CounterFactory;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import javax.servlet.http.HttpServletRequest;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
 import org.springframework.cloud.netflix.zuul.filters.Route;
 import org.springframework.cloud.netflix.zuul.filters.support.FilterConstants;
+import org.springframework.cloud.netflix.zuul.metrics.EmptyCounterFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.util.UrlPathHelper;
@@ -31,7 +66,7 @@ public class RateLimitPreFilterTest {
 
     private RateLimitPreFilter target;
 
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private RateLimiter rateLimiter;
     @Mock
     private RateLimitKeyGenerator rateLimitKeyGenerator;
@@ -39,6 +74,9 @@ public class RateLimitPreFilterTest {
     private RequestAttributes requestAttributes;
     @Mock
     private HttpServletRequest httpServletRequest;
+    @Mock
+    private RateLimitListener rateLimitListener;
+    private TestRouteLocator routeLocator;
 
     private RateLimitProperties rateLimitProperties = new RateLimitProperties();
 
@@ -55,7 +93,7 @@ public class RateLimitPreFilterTest {
         UrlPathHelper urlPathHelper = new UrlPathHelper();
         RateLimitUtils rateLimitUtils = new DefaultRateLimitUtils(rateLimitProperties);
         Route route = new Route("servicea", "/test", "servicea", "/servicea", null, Collections.emptySet());
-        TestRouteLocator routeLocator = new TestRouteLocator(Collections.emptyList(), Lists.newArrayList(route));
+        routeLocator = spy(new TestRouteLocator(Collections.emptyList(), Lists.newArrayList(route)));
         target = new RateLimitPreFilter(rateLimitProperties, routeLocator, urlPathHelper, rateLimiter, rateLimitKeyGenerator, rateLimitUtils);
     }
 
@@ -92,6 +130,38 @@ public class RateLimitPreFilterTest {
         assertThat(target.shouldFilter()).isEqualTo(false);
     }
 
+    @Test
+    public void testRouteCachedUntilRoutesRefreshed() {
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setDefaultPolicyList(Lists.newArrayList(new Policy()));
+
+        for (int i = 0; i < 3; i++) {
+            RequestContext.getCurrentContext().remove(RATE_LIMIT_EVALUATION);
+            assertThat(target.shouldFilter()).isTrue();
+        }
+        verify(routeLocator).getMatchingRoute("/servicea/test");
+
+        target.onApplicationEvent(new RoutesRefreshedEvent(routeLocator));
+        RequestContext.getCurrentContext().remove(RATE_LIMIT_EVALUATION);
+        target.shouldFilter();
+        verify(routeLocator, times(2)).getMatchingRoute("/servicea/test");
+    }
+
+    @Test
+    public void testPolicyChangedInPlaceAppliesAfterEnvironmentChange() {
+        rateLimitProperties.setEnabled(true);
+        Policy policy = new Policy();
+        policy.getType().add(new MatchType(RateLimitType.URL, "other"));
+        rateLimitProperties.getPolicyList().put("servicea", Lists.newArrayList(policy));
+        assertThat(target.shouldFilter()).isFalse();
+
+        policy.getType().get(0).setMatcher("/test");
+        target.onApplicationEvent(new EnvironmentChangeEvent(Collections.singleton("zuul.ratelimit.policy-list")));
+        RequestContext.getCurrentContext().remove(RATE_LIMIT_EVALUATION);
+
+        assertThat(target.shouldFilter()).isTrue();
+    }
+
     @Test
     public void testShouldFilter() {
         rateLimitProperties.setEnabled(true);
@@ -100,4 +170,189 @@ public class RateLimitPreFilterTest {
 
         assertThat(target.shouldFilter()).isEqualTo(true);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testShouldFilterStopsOnBreakOnMatch() {
+        rateLimitProperties.setEnabled(true);
+        Policy breakingPolicy = new Policy();
+        breakingPolicy.setBreakOnMatch(true);
+        Policy otherPolicy = new Policy();
+        rateLimitProperties.getPolicyList().put("servicea", Lists.newArrayList(breakingPolicy, otherPolicy));
+
+        assertThat(target.shouldFilter()).isEqualTo(true);
+
+        RateLimitEvaluation evaluation = (RateLimitEvaluation) RequestContext.getCurrentContext()
+            .get(RATE_LIMIT_EVALUATION);
+        assertThat(evaluation.getPolicies()).containsExactly(breakingPolicy);
+        assertThat(evaluation.isBrokeOnMatch()).isTrue();
+        assertThat(evaluation.getRoute().getId()).isEqualTo("servicea");
+    }
+
+    @Test
+    public void testRunReusesEvaluation() {
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setAddResponseHeaders(false);
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        rateLimitProperties.setDefaultPolicyList(Lists.newArrayList(policy));
+        Policy cachedPolicy = new Policy();
+        cachedPolicy.setLimit(5L);
+        RequestContext.getCurrentContext().put(RATE_LIMIT_EVALUATION,
+            new RateLimitEvaluation(null, Lists.newArrayList(cachedPolicy), false));
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        when(rateLimiter.consume(any(), any(), any())).thenReturn(new Rate("generatedKey", 4L, null, 1000L, null));
+
+        target.run();
+
+        verify(rateLimiter).consumeAll(eq(Lists.newArrayList(cachedPolicy)), eq(Lists.newArrayList("generatedKey")),
+            isNull());
+        verify(rateLimiter).consume(eq(cachedPolicy), eq("generatedKey"), isNull());
+        verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    public void testRunNotifiesListener() {
+        target = new RateLimitPreFilter(rateLimitProperties, routeLocator, new UrlPathHelper(), rateLimiter,
+            rateLimitKeyGenerator, new DefaultRateLimitUtils(rateLimitProperties), rateLimitListener);
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setAddResponseHeaders(false);
+        RequestContext.getCurrentContext().setResponse(new MockHttpServletResponse());
+        CounterFactory.initialize(new EmptyCounterFactory());
+        Policy allowedPolicy = new Policy();
+        allowedPolicy.setLimit(10L);
+        Policy rejectedPolicy = new Policy();
+        rejectedPolicy.setLimit(1L);
+        rateLimitProperties.getPolicyList().put("servicea", Lists.newArrayList(allowedPolicy, rejectedPolicy));
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        when(rateLimiter.consume(eq(allowedPolicy), any(), any())).thenReturn(new Rate("generatedKey", 9L, null, 1000L, null));
+        when(rateLimiter.consume(eq(rejectedPolicy), any(), any())).thenReturn(new Rate("generatedKey", -1L, null, 1000L, null));
+
+        assertThatThrownBy(target::run).isInstanceOf(RateLimitExceededException.class);
+
+        verify(rateLimitListener).onAllowed(argThat(route -> "servicea".equals(route.getId())), eq(allowedPolicy));
+        verify(rateLimitListener).onRejected(argThat(route -> "servicea".equals(route.getId())), eq(rejectedPolicy));
+        verifyNoMoreInteractions(rateLimitListener);
+    }
+
+    @Test
+    public void testRunNotifiesListenerOfErrorPerPolicy() {
+        target = new RateLimitPreFilter(rateLimitProperties, routeLocator, new UrlPathHelper(), rateLimiter,
+            rateLimitKeyGenerator, new DefaultRateLimitUtils(rateLimitProperties), rateLimitListener);
+        rateLimitProperties.setEnabled(true);
+        RequestContext.getCurrentContext().setResponse(new MockHttpServletResponse());
+        Policy first = new Policy();
+        first.setLimit(10L);
+        Policy second = new Policy();
+        second.setLimit(1L);
+        rateLimitProperties.getPolicyList().put("servicea", Lists.newArrayList(first, second));
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        IllegalStateException error = new IllegalStateException();
+        when(rateLimiter.consume(any(), any(), any())).thenThrow(error);
+
+        assertThatThrownBy(target::run).isSameAs(error);
+
+        verify(rateLimitListener).onError(argThat(route -> "servicea".equals(route.getId())), eq(first), eq(error));
+        verify(rateLimitListener).onError(argThat(route -> "servicea".equals(route.getId())), eq(second), eq(error));
+        verifyNoMoreInteractions(rateLimitListener);
+    }
+
+    @Test
+    public void testRunRecordsHeavyHitters() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(10, 64, 2, 3600);
+        target = new RateLimitPreFilter(rateLimitProperties, routeLocator, new UrlPathHelper(), rateLimiter,
+            rateLimitKeyGenerator, new DefaultRateLimitUtils(rateLimitProperties), RateLimitListener.NONE, tracker);
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setAddResponseHeaders(false);
+        Policy policy = new Policy();
+        policy.setLimit(10L);
+        rateLimitProperties.setDefaultPolicyList(Lists.newArrayList(policy));
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        when(rateLimiter.consume(eq(policy), any(), any())).thenReturn(new Rate("generatedKey", 9L, null, 1000L, null));
+
+        target.run();
+        target.run();
+
+        assertThat(tracker.top()).containsExactly(new HeavyHitter("generatedKey", 2L));
+        tracker.destroy();
+    }
+
+    @Test
+    public void testRunRejectsWithResponse() {
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setAddResponseHeaders(false);
+        rateLimitProperties.setRejectionMode(RateLimitRejectionMode.RESPONSE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContext.getCurrentContext().setResponse(response);
+        Policy rejectedPolicy = new Policy();
+        rejectedPolicy.setLimit(1L);
+        Policy skippedPolicy = new Policy();
+        skippedPolicy.setLimit(10L);
+        rateLimitProperties.getPolicyList().put("servicea", Lists.newArrayList(rejectedPolicy, skippedPolicy));
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        when(rateLimiter.consume(eq(rejectedPolicy), any(), any())).thenReturn(new Rate("generatedKey", -1L, null, 1000L, null));
+
+        assertThat(target.run()).isNull();
+
+        RequestContext ctx = RequestContext.getCurrentContext();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(ctx.sendZuulResponse()).isFalse();
+        assertThat(ctx.get("rateLimitExceeded")).isEqualTo("true");
+        verify(rateLimiter).consumeAll(eq(Lists.newArrayList(rejectedPolicy, skippedPolicy)), any(), isNull());
+        verify(rateLimiter).consume(eq(rejectedPolicy), eq("generatedKey"), isNull());
+        verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    public void testRunAddsStandardHeaders() {
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setHeadersMode(RateLimitHeadersMode.STANDARD);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContext.getCurrentContext().setResponse(response);
+        Policy widePolicy = new Policy();
+        widePolicy.setLimit(100L);
+        Policy narrowPolicy = new Policy();
+        narrowPolicy.setLimit(10L);
+        Policy quotaPolicy = new Policy();
+        quotaPolicy.setQuota(1L);
+        rateLimitProperties.getPolicyList().put("servicea", Lists.newArrayList(widePolicy, narrowPolicy, quotaPolicy));
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        when(rateLimiter.consume(eq(widePolicy), any(), any())).thenReturn(new Rate("generatedKey", 50L, null, 30000L, null));
+        when(rateLimiter.consume(eq(narrowPolicy), any(), any())).thenReturn(new Rate("generatedKey", 3L, null, 1500L, null));
+        when(rateLimiter.consume(eq(quotaPolicy), any(), any())).thenReturn(new Rate("generatedKey", null, 0L, 1000L, null));
+
+        target.run();
+
+        assertThat(response.getHeaderNames()).containsOnly(HEADER_STANDARD_LIMIT, HEADER_STANDARD_REMAINING,
+            HEADER_STANDARD_RESET);
+        assertThat(response.getHeader(HEADER_STANDARD_LIMIT)).isEqualTo("10");
+        assertThat(response.getHeader(HEADER_STANDARD_REMAINING)).isEqualTo("3");
+        assertThat(response.getHeader(HEADER_STANDARD_RESET)).isEqualTo("2");
+    }
+
+    @Test
+    public void testRunUsesStartedConsumption() throws Exception {
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setAddResponseHeaders(false);
+        Policy policy = new Policy();
+        policy.setLimit(1L);
+        rateLimitProperties.setDefaultPolicyList(Lists.newArrayList(policy));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/servicea/test");
+        request.setAsyncSupported(true);
+        RequestContext.getCurrentContext().setRequest(request);
+        RequestContext.getCurrentContext().setResponse(new MockHttpServletResponse());
+        CounterFactory.initialize(new EmptyCounterFactory());
+        when(rateLimitKeyGenerator.key(any(), any(), any())).thenReturn("generatedKey");
+        Rate rate = new Rate("generatedKey", -1L, null, 1000L, null);
+        doReturn(CompletableFuture.completedFuture(Lists.newArrayList(rate)))
+            .when(rateLimiter).consumeAllAsync(any(), any(), any());
+        new RateLimitAsyncFilter(target, new DefaultRateLimiterErrorHandler(), 1000)
+            .doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThatThrownBy(target::run).isInstanceOf(RateLimitExceededException.class);
+
+        verify(rateLimiter).consumeAllAsync(eq(Lists.newArrayList(policy)), eq(Lists.newArrayList("generatedKey")),
+            isNull());
+        verifyNoMoreInteractions(rateLimiter);
+        assertThat(request.getAttribute(RATE_LIMIT_CONSUMPTION)).isNull();
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics.HeavyHitterTracker.HeavyHitter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeavyHitterTrackerTest {
+
+    private HeavyHitterTracker target;
+
+    @Before
+    public void setUp() {
+        target = new HeavyHitterTracker(3, 1024, 4, 3600);
+    }
+
+    @After
+    public void tearDown() {
+        target.destroy();
+    }
+
+    @Test
+    public void testTopKeys() {
+        record("first", 50);
+        record("second", 30);
+        record("third", 20);
+
+        List<HeavyHitter> top = target.top();
+
+        assertThat(top).extracting(HeavyHitter::getKey).containsExactly("first", "second", "third");
+        assertThat(top.get(0).getEstimate()).isGreaterThanOrEqualTo(50L);
+        assertThat(target.total()).isEqualTo(100L);
+    }
+
+    @Test
+    public void testCapacityBoundsKeys() {
+        record("first", 50);
+        record("second", 40);
+        record("third", 30);
+        for (int i = 0; i < 10_000; i++) {
+            target.record("cold-" + i);
+        }
+        record("hot", 60);
+
+        assertThat(target.top()).hasSize(3)
+            .extracting(HeavyHitter::getKey).containsExactly("hot", "first", "second");
+    }
+
+    @Test
+    public void testDecayHalvesCounts() {
+        record("first", 40);
+        record("second", 1);
+
+        target.decay();
+
+        assertThat(target.top()).extracting(HeavyHitter::getKey).containsExactly("first");
+        assertThat(target.top().get(0).getEstimate()).isGreaterThanOrEqualTo(20L).isLessThan(40L);
+        assertThat(target.total()).isEqualTo(20L);
+    }
+
+    @Test
+    public void testMetrics() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new HeavyHitterMetrics(target).bindTo(meterRegistry);
+        record("first", 3);
+        record("second", 1);
+
+        assertThat(meterRegistry.get(HeavyHitterMetrics.ESTIMATE_GAUGE).tag("rank", "1").gauge().value())
+            .isEqualTo(3.0);
+        assertThat(meterRegistry.get(HeavyHitterMetrics.ESTIMATE_GAUGE).tag("rank", "3").gauge().value())
+            .isZero();
+        assertThat(meterRegistry.get(HeavyHitterMetrics.TOP_SHARE_GAUGE).gauge().value()).isEqualTo(0.75);
+    }
+
+    @Test
+    public void testMetricsRankOncePerScrape() {
+        HeavyHitterTracker tracker = spy(target);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new HeavyHitterMetrics(tracker).bindTo(meterRegistry);
+        record("first", 3);
+
+        meterRegistry.get(HeavyHitterMetrics.ESTIMATE_GAUGE).gauges().forEach(Gauge::value);
+        meterRegistry.get(HeavyHitterMetrics.TOP_SHARE_GAUGE).gauge().value();
+
+        verify(tracker, times(1)).top();
+    }
+
+    @Test
+    public void testEndpoint() {
+        record("first", 2);
+
+        assertThat(new HeavyHitterEndpoint(target).invoke()).extracting(HeavyHitter::getKey).containsExactly("first");
+    }
+
+    private void record(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            target.record(key);
+        }
+    }
+}
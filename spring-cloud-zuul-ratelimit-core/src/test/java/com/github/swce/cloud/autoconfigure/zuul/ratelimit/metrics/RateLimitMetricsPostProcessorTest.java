@@ -0,0 +1,120 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.Rate;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.RateLimiter;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitRepository;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.repository.RateLimiterErrorHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanFactory;
+
+public class RateLimitMetricsPostProcessorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiter rateLimiter;
+    private RateLimiterErrorHandler rateLimiterErrorHandler;
+    private RateLimiter target;
+    private RateLimiterErrorHandler targetErrorHandler;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRepository(RateLimitRepository.REDIS);
+        BeanFactory beanFactory = mock(BeanFactory.class);
+        when(beanFactory.getBean(MeterRegistry.class)).thenReturn(meterRegistry);
+        when(beanFactory.getBean(RateLimitProperties.class)).thenReturn(properties);
+        rateLimiter = mock(RateLimiter.class);
+        rateLimiterErrorHandler = mock(RateLimiterErrorHandler.class);
+
+        RateLimitMetricsPostProcessor postProcessor = new RateLimitMetricsPostProcessor();
+        postProcessor.setBeanFactory(beanFactory);
+        targetErrorHandler = (RateLimiterErrorHandler) postProcessor
+            .postProcessAfterInitialization(rateLimiterErrorHandler, "rateLimiterErrorHandler");
+        target = (RateLimiter) postProcessor.postProcessAfterInitialization(rateLimiter, "rateLimiter");
+    }
+
+    @Test
+    public void testConsumeIsTimed() {
+        Policy policy = new Policy();
+        Rate rate = new Rate("key", 9L, null, 1000L, null);
+        when(rateLimiter.consume(policy, "key", null)).thenReturn(rate);
+
+        assertThat(target.consume(policy, "key", null)).isSameAs(rate);
+
+        assertThat(meterRegistry.get(MeteredRateLimiter.CONSUME_TIMER)
+            .tag("repository", "REDIS")
+            .tag("operation", "consume")
+            .tag("outcome", "success")
+            .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testErrorsAreCounted() {
+        Policy policy = new Policy();
+        IllegalStateException exception = new IllegalStateException();
+        when(rateLimiter.consume(any(), any(), any())).thenAnswer(invocation -> {
+            targetErrorHandler.handleSaveError("key", exception);
+            return new Rate("key", 9L, null, 1000L, null);
+        });
+
+        target.consume(policy, "key", null);
+
+        verify(rateLimiterErrorHandler).handleSaveError("key", exception);
+        assertThat(meterRegistry.get(MeteredRateLimiterErrorHandler.ERRORS_COUNTER)
+            .tag("repository", "REDIS")
+            .tag("type", "save")
+            .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRaisedErrorsAreTimedAsFailed() {
+        Policy policy = new Policy();
+        when(rateLimiter.consume(any(), any(), any()))
+            .thenReturn(new Rate("key", 9L, null, 1000L, null))
+            .thenThrow(new IllegalStateException());
+
+        target.consume(policy, "key", null);
+        assertThatThrownBy(() -> target.consume(policy, "key", null)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(consumeCount("success")).isEqualTo(1);
+        assertThat(consumeCount("error")).isEqualTo(1);
+    }
+
+    @Test
+    public void testReportedErrorIsCountedOnce() {
+        Policy policy = new Policy();
+        IllegalStateException exception = new IllegalStateException();
+        when(rateLimiter.consume(any(), any(), any())).thenAnswer(invocation -> {
+            targetErrorHandler.handleError("failed", exception);
+            throw exception;
+        });
+
+        assertThatThrownBy(() -> target.consume(policy, "key", null)).isSameAs(exception);
+
+        assertThat(meterRegistry.get(MeteredRateLimiterErrorHandler.ERRORS_COUNTER)
+            .tag("repository", "REDIS")
+            .tag("type", "other")
+            .counter().count()).isEqualTo(1);
+        assertThat(consumeCount("error")).isEqualTo(1);
+    }
+
+    private long consumeCount(String outcome) {
+        return meterRegistry.get(MeteredRateLimiter.CONSUME_TIMER)
+            .tag("repository", "REDIS")
+            .tag("operation", "consume")
+            .tag("outcome", outcome)
+            .timer().count();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties;
+import com.github.swce.cloud.autoconfigure.zuul.ratelimit.config.properties.RateLimitProperties.Policy;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+public class RateLimitMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitProperties properties;
+    private RateLimitMetrics target;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new RateLimitProperties();
+        target = new RateLimitMetrics(meterRegistry, properties);
+    }
+
+    @Test
+    public void testDecisionsPerRouteAndPolicy() {
+        Policy first = new Policy();
+        Policy second = new Policy();
+        second.setLimit(1L);
+        properties.getPolicyList().put("servicea", Lists.newArrayList(first, second));
+        Route route = new Route("servicea", "/test", "servicea", "/servicea", null, Collections.emptySet());
+
+        target.onAllowed(route, first);
+        target.onAllowed(route, first);
+        target.onAllowed(route, second);
+        target.onRejected(route, second);
+        target.onError(route, second, new IllegalStateException());
+
+        assertThat(count("servicea", "0", "allowed")).isEqualTo(2);
+        assertThat(count("servicea", "1", "allowed")).isEqualTo(1);
+        assertThat(count("servicea", "1", "rejected")).isEqualTo(1);
+        assertThat(count("servicea", "1", "error")).isEqualTo(1);
+        assertThat(count("servicea", "0", "rejected")).isZero();
+    }
+
+    @Test
+    public void testDecisionsWithoutRoute() {
+        Policy policy = new Policy();
+        properties.setDefaultPolicyList(Lists.newArrayList(policy));
+
+        target.onRejected(null, policy);
+
+        assertThat(count(RateLimitMetrics.NO_ROUTE, "0", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    public void testDecisionsReuseCounters() {
+        Policy policy = new Policy();
+        properties.setDefaultPolicyList(Lists.newArrayList(policy));
+        Route route = new Route("servicea", "/test", "servicea", "/servicea", null, Collections.emptySet());
+
+        target.onAllowed(route, policy);
+        int meters = meterRegistry.getMeters().size();
+        target.onAllowed(route, policy);
+        target.onRejected(route, policy);
+
+        assertThat(meterRegistry.getMeters()).hasSize(meters);
+        assertThat(count("servicea", "0", "allowed")).isEqualTo(2);
+    }
+
+    private double count(String route, String policy, String decision) {
+        return meterRegistry.get(RateLimitMetrics.DECISIONS_COUNTER)
+            .tag("route", route)
+            .tag("policy", policy)
+            .tag("decision", decision)
+            .counter()
+            .count();
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.swce.cloud.autoconfigure.zuul.ratelimit.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class HashingRateLimitKeyEncoderTest {
+
+    private final HashingRateLimitKeyEncoder target = new HashingRateLimitKeyEncoder("app");
+
+    @Test
+    public void testEncodeFixedLength() {
+        String shortKey = target.encode("app:a");
+        String longKey = target.encode("app:serviceA:10.1.2.3:user@example.com:/api/v1/orders");
+
+        assertThat(shortKey).hasSize(26).startsWith("app:");
+        assertThat(longKey).hasSize(26).startsWith("app:");
+    }
+
+    @Test
+    public void testEncodeDeterministic() {
+        assertThat(target.encode("app:key")).isEqualTo(new HashingRateLimitKeyEncoder("app").encode("app:key"));
+        assertThat(target.encode("app:key")).isNotEqualTo(target.encode("app:key2"));
+    }
+
+    @Test
+    public void testEncodeWithoutPrefix() {
+        String encoded = target.encode("other:key");
+
+        assertThat(encoded).hasSize(22).matches("[A-Za-z0-9_-]+");
+    }
+}
@@ -29,4 +29,10 @@ public class RateLimitExceededExceptionTest {
         ZuulException zuulException = (ZuulException) cause;
         assertThat(zuulException.getMessage()).isEqualTo("429");
     }
+
+    @Test
+    public void testExceptionIsStackless() {
+        assertThat(target.getStackTrace()).isEmpty();
+        assertThat(target.getCause().getStackTrace()).isEmpty();
+    }
 }
\ No newline at end of file